@@ -0,0 +1,90 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.TtlInfo;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Learns the publication rate of a feed from the publication dates of its items. Keeps an exponentially
+ * weighted moving average of the interval between new items and derives the refresh interval from it.
+ * Every refresh without new items doubles the interval, within the configured bounds.
+ */
+public class FeedsAdaptiveTtl {
+
+    @Getter
+    @Value("${feeds.adaptiveTtl:false}")
+    protected boolean adaptiveTtl;
+
+    @Value("${feeds.adaptiveTtlMin:PT5M}")
+    protected Duration adaptiveTtlMin = Duration.ofMinutes(5);
+
+    @Value("${feeds.adaptiveTtlMax:PT24H}")
+    protected Duration adaptiveTtlMax = Duration.ofHours(24);
+
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final int REFRESHES_PER_ITEM_INTERVAL = 2;
+    private static final int MAX_BACKOFF_EXPONENT = 6;
+
+    public void updateItemStatistics(FeedsCache.FeedCacheEntry previousEntry, FeedsCache.FeedCacheEntry feedCacheEntry, List<LocalDateTime> itemsPublished) {
+
+        var latestItemPublished = previousEntry == null ? null : previousEntry.getLatestItemPublished();
+        var itemInterval = previousEntry == null ? null : previousEntry.getItemInterval();
+        var unchangedRefreshCounter = previousEntry == null ? 0 : previousEntry.getUnchangedRefreshCounter();
+        var sortedItemsPublished = itemsPublished.stream().filter(Objects::nonNull).sorted().toList();
+
+        if(latestItemPublished == null){
+            // first refresh - estimated from the items already in the feed
+            if(sortedItemsPublished.size() > 1){
+                var first = sortedItemsPublished.get(0);
+                var last = sortedItemsPublished.get(sortedItemsPublished.size() - 1);
+                itemInterval = Duration.between(first, last).dividedBy(sortedItemsPublished.size() - 1);
+            }
+            if(!sortedItemsPublished.isEmpty()){
+                latestItemPublished = sortedItemsPublished.get(sortedItemsPublished.size() - 1);
+            }
+            unchangedRefreshCounter = 0;
+        }else{
+            var newItemsPublished = sortedItemsPublished.stream().filter(p -> p.isAfter(previousEntry.getLatestItemPublished())).toList();
+            if(newItemsPublished.isEmpty()){
+                unchangedRefreshCounter++;
+            }else{
+                for(LocalDateTime itemPublished : newItemsPublished){
+                    var interval = Duration.between(latestItemPublished, itemPublished);
+                    itemInterval = itemInterval == null ? interval : weightedAverage(itemInterval, interval);
+                    latestItemPublished = itemPublished;
+                }
+                unchangedRefreshCounter = 0;
+            }
+        }
+
+        feedCacheEntry.setLatestItemPublished(latestItemPublished);
+        feedCacheEntry.setItemInterval(itemInterval);
+        feedCacheEntry.setUnchangedRefreshCounter(unchangedRefreshCounter);
+    }
+
+    public Optional<TtlInfo> adaptiveTtl(FeedsCache.FeedCacheEntry feedCacheEntry) {
+        if(feedCacheEntry.getItemInterval() == null){
+            return Optional.empty();
+        }
+        var backoffExponent = Math.min(Math.max(0, feedCacheEntry.getUnchangedRefreshCounter() - 1), MAX_BACKOFF_EXPONENT);
+        var ttl = feedCacheEntry.getItemInterval().dividedBy(REFRESHES_PER_ITEM_INTERVAL).multipliedBy(1L << backoffExponent);
+        if(ttl.compareTo(adaptiveTtlMin) < 0){
+            ttl = adaptiveTtlMin;
+        }
+        if(ttl.compareTo(adaptiveTtlMax) > 0){
+            ttl = adaptiveTtlMax;
+        }
+        return Optional.of(new TtlInfo(ttl, "adaptive"));
+    }
+
+    private static Duration weightedAverage(Duration average, Duration value) {
+        return Duration.ofSeconds(Math.round(EWMA_WEIGHT * value.toSeconds() + (1 - EWMA_WEIGHT) * average.toSeconds()));
+    }
+}
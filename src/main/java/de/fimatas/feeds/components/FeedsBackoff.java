@@ -0,0 +1,118 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsDownloadException;
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-feed exponential backoff after failed downloads (feeds.adaptiveBackoff=true). The base delay depends on the
+ * class of the error and doubles with every consecutive failure, up to feeds.backoffMax, spread by a random jitter.
+ * A Retry-After sent by the upstream is the lower bound. The first successful download resets the feed.
+ */
+@CommonsLog
+public class FeedsBackoff {
+
+    public FeedsBackoff(FeedsTimer feedsTimer) {
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsTimer feedsTimer;
+
+    @Getter
+    @Value("${feeds.adaptiveBackoff:false}")
+    protected boolean adaptiveBackoff;
+
+    @Value("${feeds.backoffMax:PT24H}")
+    protected Duration backoffMax = Duration.ofHours(24);
+
+    private static final double JITTER = 0.2;
+    private static final int MAX_EXPONENT = 16;
+
+    private final Map<String, BackoffState> backoffStates = new ConcurrentHashMap<>();
+
+    public void recordFailure(String key, Throwable e) {
+        if(!adaptiveBackoff){
+            return;
+        }
+        var errorClass = classify(e);
+        var retryAfter = e instanceof FeedsDownloadException downloadException ? downloadException.getRetryAfter() : null;
+        var state = backoffStates.compute(key, (k, previous) -> {
+            var failures = previous == null ? 1 : previous.failures() + 1;
+            var delay = delay(errorClass, failures);
+            if(retryAfter != null && retryAfter.compareTo(delay) > 0){
+                delay = retryAfter;
+            }
+            return new BackoffState(failures, errorClass, feedsTimer.localDateTimeNow().plus(delay));
+        });
+        log.info("backoff '" + key + "': " + errorClass + ", failures: " + state.failures() + ", retry not before: " + state.retryNotBefore());
+    }
+
+    public void recordSuccess(String key) {
+        if(backoffStates.remove(key) != null){
+            log.info("backoff '" + key + "' reset");
+        }
+    }
+
+    public Optional<LocalDateTime> retryNotBefore(String key) {
+        if(!adaptiveBackoff){
+            return Optional.empty();
+        }
+        return Optional.ofNullable(backoffStates.get(key)).map(BackoffState::retryNotBefore);
+    }
+
+    public boolean isBackingOff(String key) {
+        return retryNotBefore(key).map(time -> time.isAfter(feedsTimer.localDateTimeNow())).orElse(false);
+    }
+
+    public Duration remaining(String key) {
+        return retryNotBefore(key).map(time -> Duration.between(feedsTimer.localDateTimeNow(), time))
+                .filter(duration -> !duration.isNegative()).orElse(Duration.ZERO);
+    }
+
+    public Map<String, BackoffState> getBackoffStates() {
+        return Map.copyOf(backoffStates);
+    }
+
+    public void restore(String key, BackoffState backoffState) {
+        backoffStates.put(key, backoffState);
+    }
+
+    protected Duration delay(FeedsDownloadException.ErrorClass errorClass, int failures) {
+        var delay = baseDelay(errorClass).multipliedBy(1L << Math.min(failures - 1, MAX_EXPONENT));
+        if(delay.compareTo(backoffMax) > 0){
+            delay = backoffMax;
+        }
+        var jitterFactor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Duration.ofMillis((long) (delay.toMillis() * jitterFactor));
+    }
+
+    private static Duration baseDelay(FeedsDownloadException.ErrorClass errorClass) {
+        return switch (errorClass) {
+            case SERVER_ERROR -> Duration.ofMinutes(2);
+            case TIMEOUT, CONNECTION, OTHER -> Duration.ofMinutes(5);
+            case RATE_LIMITED -> Duration.ofMinutes(10);
+            case DNS -> Duration.ofMinutes(30);
+            case CLIENT_ERROR -> Duration.ofHours(1);
+        };
+    }
+
+    static FeedsDownloadException.ErrorClass classify(Throwable e) {
+        for(var cause = e; cause != null; cause = cause.getCause()){
+            if(cause instanceof FeedsDownloadException downloadException){
+                return downloadException.getErrorClass();
+            }
+        }
+        return FeedsDownloadException.ErrorClass.OTHER;
+    }
+
+    public record BackoffState(int failures, FeedsDownloadException.ErrorClass errorClass, LocalDateTime retryNotBefore) {
+    }
+}
@@ -0,0 +1,186 @@
+package de.fimatas.feeds.components;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsCacheStorage;
+import lombok.SneakyThrows;
+import lombok.extern.apachecommons.CommonsLog;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@CommonsLog
+public class FeedsCacheJsonFileStorage implements FeedsCacheStorage {
+
+    private final ObjectMapper objectMapper;
+
+    public FeedsCacheJsonFileStorage() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    /**
+     * Reads the cache file token by token. Only one feed entry is held as a tree at a time, and the feed bodies
+     * stay compressed. An entry that can't be mapped is skipped instead of failing the whole cache.
+     */
+    @Override
+    public FeedsCache.FeedsCacheRoot read() {
+        return read(Map.of());
+    }
+
+    /**
+     * Skips the feeds of every group whose stored generation equals the current one, the current group is taken over.
+     */
+    @Override
+    public FeedsCache.FeedsCacheRoot reload(FeedsCache.FeedsCacheRoot current) {
+        var currentGroups = new HashMap<String, FeedsCache.FeedsCacheGroup>();
+        current.getCacheGroups().forEach(group -> currentGroups.put(group.getGroupId(), group));
+        return read(currentGroups);
+    }
+
+    @SneakyThrows
+    private FeedsCache.FeedsCacheRoot read(Map<String, FeedsCache.FeedsCacheGroup> currentGroups) {
+        var file = FeedsCache.lookupCacheFile();
+        if(!file.exists() || file.length() == 0){
+            return null;
+        }
+        try (var parser = objectMapper.createParser(file)) {
+            expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+            var root = new FeedsCache.FeedsCacheRoot();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "generation" -> root.setGeneration(parser.getLongValue());
+                    case "lastException" -> root.setLastException(parser.readValueAs(LocalDateTime.class));
+                    case "cacheGroups" -> readGroups(parser, root, currentGroups);
+                    default -> parser.skipChildren();
+                }
+            }
+            return root;
+        }
+    }
+
+    private void readGroups(JsonParser parser, FeedsCache.FeedsCacheRoot root, Map<String, FeedsCache.FeedsCacheGroup> currentGroups) throws IOException {
+        expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            var group = new FeedsCache.FeedsCacheGroup();
+            FeedsCache.FeedsCacheGroup unchanged = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "groupId" -> group.setGroupId(parser.getValueAsString());
+                    case "generation" -> group.setGeneration(parser.getLongValue());
+                    case "lastRefreshMethodCall" -> group.setLastRefreshMethodCall(parser.readValueAs(LocalDateTime.class));
+                    case "groupFeeds" -> {
+                        // groupId and generation precede the feeds
+                        unchanged = lookupUnchanged(currentGroups, group);
+                        if(unchanged != null){
+                            parser.skipChildren();
+                        }else{
+                            readGroupFeeds(parser, group);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            root.getCacheGroups().add(unchanged != null ? unchanged : group);
+        }
+        expectToken(parser.currentToken(), JsonToken.END_ARRAY);
+    }
+
+    private static FeedsCache.FeedsCacheGroup lookupUnchanged(Map<String, FeedsCache.FeedsCacheGroup> currentGroups, FeedsCache.FeedsCacheGroup group) {
+        var current = currentGroups.get(group.getGroupId());
+        // generation 0 was written before generations existed
+        return current != null && group.getGeneration() > 0 && current.getGeneration() == group.getGeneration() ? current : null;
+    }
+
+    private void readGroupFeeds(JsonParser parser, FeedsCache.FeedsCacheGroup group) throws IOException {
+        expectToken(parser.currentToken(), JsonToken.START_OBJECT);
+        var groupFeeds = new HashMap<String, FeedsCache.FeedCacheEntry>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var key = parser.currentName();
+            parser.nextToken();
+            JsonNode entryNode = parser.readValueAsTree();
+            try {
+                groupFeeds.put(key, objectMapper.treeToValue(entryNode, FeedsCache.FeedCacheEntry.class));
+            } catch (Exception e) {
+                log.warn("skipping corrupt cache entry '" + key + "': " + e.getMessage());
+            }
+        }
+        group.setGroupFeeds(groupFeeds);
+    }
+
+    private static void expectToken(JsonToken actual, JsonToken expected) throws JsonParseException {
+        if(actual != expected){
+            throw new JsonParseException(null, "Unexpected token in cache file: " + actual + " (expected: " + expected + ")");
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void write(FeedsCache.FeedsCacheRoot root) {
+        var json = objectMapper.writeValueAsString(root);
+        // written to a temporary file first, so other instances never read a half written cache
+        var tempPath = FeedsCache.lookupCacheFile("json.tmp").toPath();
+        Files.writeString(tempPath, json);
+        Files.move(tempPath, FeedsCache.lookupCacheFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads only the leading generation field, 0 for a cache written without generations.
+     */
+    @Override
+    public long generation() {
+        var file = FeedsCache.lookupCacheFile();
+        if(!file.exists() || file.length() == 0){
+            return -1;
+        }
+        try (var parser = objectMapper.createParser(file)) {
+            if(parser.nextToken() == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME
+                    && parser.currentName().equals("generation") && parser.nextToken() == JsonToken.VALUE_NUMBER_INT){
+                return parser.getLongValue();
+            }
+            return 0;
+        } catch (IOException e) {
+            log.warn("could not read cache generation: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public AccessState checkAccess() {
+        var file = FeedsCache.lookupCacheFile();
+        if(!file.exists()){
+            FileUtils.touch(file);
+        }
+        if(file.exists()){
+            if(!file.isFile() || !file.canRead() ){
+                log.error("Cache file is not file/readable");
+                return AccessState.NOT_READABLE;
+            }
+            if(!file.canWrite()){
+                log.error("Cache file is not writable");
+                return AccessState.NOT_WRITABLE;
+            }
+        }
+        return AccessState.OK;
+    }
+
+    @Override
+    public void destroy() {
+        FileUtils.deleteQuietly(FeedsCache.lookupCacheFile());
+    }
+}
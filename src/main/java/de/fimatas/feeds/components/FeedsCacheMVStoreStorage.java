@@ -0,0 +1,198 @@
+package de.fimatas.feeds.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsCacheStorage;
+import lombok.SneakyThrows;
+import lombok.extern.apachecommons.CommonsLog;
+import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Embedded key-value storage. Every group lives in its own map with one entry per feed,
+ * so a group can be written without serializing the whole cache. Each write is one commit.
+ */
+@CommonsLog
+public class FeedsCacheMVStoreStorage implements FeedsCacheStorage {
+
+    private static final String MAP_META = "meta";
+    private static final String MAP_GROUP_PREFIX = "group.";
+    private static final String META_LAST_EXCEPTION = "lastException";
+    private static final String META_GROUP_PREFIX = "group.";
+
+    private final ObjectMapper objectMapper;
+
+    private MVStore store = null;
+    private boolean closed = false;
+
+    public FeedsCacheMVStoreStorage() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    @Override
+    @SneakyThrows
+    public synchronized FeedsCache.FeedsCacheRoot read() {
+        var meta = openStore().<String, String>openMap(MAP_META);
+        if(meta.isEmpty()){
+            return null;
+        }
+        var root = new FeedsCache.FeedsCacheRoot();
+        var lastException = meta.get(META_LAST_EXCEPTION);
+        root.setLastException(lastException == null || lastException.isEmpty() ? null : LocalDateTime.parse(lastException));
+        for(String metaKey : meta.keySet()){
+            if(metaKey.startsWith(META_GROUP_PREFIX)){
+                var group = objectMapper.readValue(meta.get(metaKey), FeedsCache.FeedsCacheGroup.class);
+                var groupFeeds = new HashMap<String, FeedsCache.FeedCacheEntry>();
+                for(var entry : openGroupMap(group.getGroupId()).entrySet()){
+                    groupFeeds.put(entry.getKey(), objectMapper.readValue(entry.getValue(), FeedsCache.FeedCacheEntry.class));
+                }
+                group.setGroupFeeds(groupFeeds);
+                root.getCacheGroups().add(group);
+            }
+        }
+        return root;
+    }
+
+    @Override
+    public synchronized void write(FeedsCache.FeedsCacheRoot root) {
+        var meta = openStore().<String, String>openMap(MAP_META);
+        var groupIds = new HashSet<String>();
+        try {
+            meta.put(META_LAST_EXCEPTION, root.getLastException() == null ? "" : root.getLastException().toString());
+            for(var group : root.getCacheGroups()){
+                putGroup(meta, group);
+                groupIds.add(META_GROUP_PREFIX + group.getGroupId());
+            }
+            for(String metaKey : new HashSet<>(meta.keySet())){
+                if(metaKey.startsWith(META_GROUP_PREFIX) && !groupIds.contains(metaKey)){
+                    store.removeMap(MAP_GROUP_PREFIX + metaKey.substring(META_GROUP_PREFIX.length()));
+                    meta.remove(metaKey);
+                }
+            }
+            store.commit();
+        } catch (RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void writeGroups(FeedsCache.FeedsCacheRoot root, Collection<FeedsCache.FeedsCacheGroup> groups) {
+        var meta = openStore().<String, String>openMap(MAP_META);
+        try {
+            meta.put(META_LAST_EXCEPTION, root.getLastException() == null ? "" : root.getLastException().toString());
+            for(var group : groups){
+                putGroup(meta, group);
+            }
+            store.commit();
+        } catch (RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    @SneakyThrows
+    public synchronized void writeFeed(FeedsCache.FeedsCacheRoot root, FeedsCache.FeedsCacheGroup group, FeedsCache.FeedCacheEntry feedCacheEntry) {
+        var meta = openStore().<String, String>openMap(MAP_META);
+        try {
+            putGroupWithoutFeeds(meta, group);
+            openGroupMap(group.getGroupId()).put(feedCacheEntry.getKey(), objectMapper.writeValueAsString(feedCacheEntry));
+            store.commit();
+        } catch (RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized AccessState checkAccess() {
+        var file = lookupStoreFile();
+        if(store == null || store.isClosed()){
+            log.error("Cache store is not open");
+            return AccessState.NOT_READABLE;
+        }
+        if(!file.canWrite()){
+            log.error("Cache store is not writable");
+            return AccessState.NOT_WRITABLE;
+        }
+        return AccessState.OK;
+    }
+
+    @Override
+    public synchronized void close() {
+        if(store != null && !store.isClosed()){
+            // flushes the last commit and releases the file lock
+            store.close();
+            log.info("cache store closed");
+        }
+        store = null;
+        closed = true;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if(store != null && !store.isClosed()){
+            store.closeImmediately();
+        }
+        store = null;
+        FileUtils.deleteQuietly(lookupStoreFile());
+    }
+
+    @SneakyThrows
+    private void putGroup(MVMap<String, String> meta, FeedsCache.FeedsCacheGroup group) {
+        putGroupWithoutFeeds(meta, group);
+        var groupMap = openGroupMap(group.getGroupId());
+        for(var entry : group.getGroupFeeds().entrySet()){
+            groupMap.put(entry.getKey(), objectMapper.writeValueAsString(entry.getValue()));
+        }
+        for(String key : new HashSet<>(groupMap.keySet())){
+            if(!group.getGroupFeeds().containsKey(key)){
+                groupMap.remove(key);
+            }
+        }
+    }
+
+    @SneakyThrows
+    private void putGroupWithoutFeeds(MVMap<String, String> meta, FeedsCache.FeedsCacheGroup group) {
+        var groupWithoutFeeds = new FeedsCache.FeedsCacheGroup();
+        groupWithoutFeeds.setGroupId(group.getGroupId());
+        groupWithoutFeeds.setLastRefreshMethodCall(group.getLastRefreshMethodCall());
+        meta.put(META_GROUP_PREFIX + group.getGroupId(), objectMapper.writeValueAsString(groupWithoutFeeds));
+    }
+
+    private MVMap<String, String> openGroupMap(String groupId) {
+        return openStore().openMap(MAP_GROUP_PREFIX + groupId);
+    }
+
+    private MVStore openStore() {
+        if(closed){
+            throw new IllegalStateException("Cache store is closed");
+        }
+        if(store == null || store.isClosed()){
+            store = new MVStore.Builder()
+                    .fileName(lookupStoreFile().getAbsolutePath())
+                    .autoCommitDisabled()
+                    .open();
+        }
+        return store;
+    }
+
+    private static File lookupStoreFile() {
+        return FeedsCache.lookupCacheFile("mv.db");
+    }
+}
@@ -0,0 +1,34 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsCacheStorage;
+
+public class FeedsCacheMemoryStorage implements FeedsCacheStorage {
+
+    private volatile FeedsCache.FeedsCacheRoot root = null;
+
+    @Override
+    public FeedsCache.FeedsCacheRoot read() {
+        return root;
+    }
+
+    @Override
+    public void write(FeedsCache.FeedsCacheRoot root) {
+        this.root = root;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public AccessState checkAccess() {
+        return AccessState.OK;
+    }
+
+    @Override
+    public void destroy() {
+        root = null;
+    }
+}
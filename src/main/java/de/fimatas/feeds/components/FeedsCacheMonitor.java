@@ -0,0 +1,54 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the cache storage in the background, so the request path only has to read the resulting status.
+ * Runs on its own thread - a refresh occupies a thread of the scheduler for minutes, the status must not wait for it.
+ */
+@CommonsLog
+public class FeedsCacheMonitor {
+
+    @Value("${feeds.cacheMonitorDelay:PT5S}")
+    protected Duration cacheMonitorDelay = Duration.ofSeconds(5);
+
+    protected Duration initialDelay = Duration.ofSeconds(5);
+
+    private ScheduledExecutorService executor = null;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "feeds-cache-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::checkCache, initialDelay.toMillis(), cacheMonitorDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        if(executor != null){
+            executor.shutdownNow();
+        }
+    }
+
+    public void checkCache() {
+        try {
+            if(FeedsCache.getInstance().isNotValid()){
+                log.warn("cache monitor: cache is not valid");
+            }
+        } catch (Exception e) {
+            log.warn("cache monitor: cache could not be checked: " + e.getMessage());
+        }
+    }
+}
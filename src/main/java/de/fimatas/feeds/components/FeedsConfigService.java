@@ -2,7 +2,10 @@ package de.fimatas.feeds.components;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import de.fimatas.feeds.model.FeedsConfigIndex;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.apachecommons.CommonsLog;
@@ -13,12 +16,24 @@ import org.springframework.scheduling.annotation.Scheduled;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.LinkedList;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @CommonsLog
 public class FeedsConfigService {
 
+    @Getter
     @Value("${feeds.useTestConfig:true}")
     protected boolean useTestConfig;
 
@@ -30,50 +45,188 @@ public class FeedsConfigService {
     @Value("${feeds.startupDelayMinutes}")
     protected long startupDelayMinutes;
 
+    @Getter
+    @Value("${feeds.perFeedScheduling:false}")
+    protected boolean perFeedScheduling;
+
+    @Value("${feeds.watchConfig:true}")
+    protected boolean watchConfig = true;
+
+    @Value("${feeds.configReloadDebounce:PT2S}")
+    protected Duration configReloadDebounce = Duration.ofSeconds(2);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private FeedsConfig feedsConfig;
+    private volatile FeedsConfigIndex feedsConfigIndex;
+
+    // resolved include/exclude lists by feed key, only the changed ones are compiled again on reload
+    private volatile Map<String, FilterPlan> filterPlans = Map.of();
 
     private static final long listenerInterval = 15_000L;
 
     private long lastKnownFileDateModified = -1;
 
+    private final List<Consumer<FeedsConfigDiff>> configChangeListeners = new CopyOnWriteArrayList<>();
+
+    // one thread calls the listeners, so they get the diffs in the order the reloads computed them
+    private final ExecutorService notifyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "feeds-config-notify");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService = null;
+    private ScheduledExecutorService reloadExecutor = null;
+    private final Object pendingReloadLock = new Object();
+    private ScheduledFuture<?> pendingReload = null;
+
     @PostConstruct
     private void init() {
         log.info("useTestConfig=" + useTestConfig);
         refreshConfig();
+        if(!useTestConfig && watchConfig){
+            startWatching();
+        }
     }
 
+    @PreDestroy
+    private void shutdown() {
+        if(reloadExecutor != null){
+            reloadExecutor.shutdownNow();
+        }
+        notifyExecutor.shutdown();
+        try {
+            if(watchService != null){
+                watchService.close();
+            }
+        } catch (Exception e) {
+            log.debug("config watch service not closed: " + e.getMessage());
+        }
+    }
+
+    // also the fallback for file systems without change notifications, e.g. network shares
     @Scheduled(initialDelay = 8000, fixedDelay = listenerInterval)
-    private synchronized void refreshConfig() {
-        if(lastKnownFileDateModified != lookupConfigJsonLastModified()){
-            lastKnownFileDateModified = lookupConfigJsonLastModified();
-            log.info("refreshing config");
-            readFeedsConfig();
+    private void refreshConfig() {
+        reloadAndNotify(this::reloadIfModified);
+    }
+
+    private synchronized FeedsConfigDiff reloadIfModified() {
+        var lastModified = lookupConfigJsonLastModified();
+        if(lastKnownFileDateModified == lastModified){
+            return null;
+        }
+        log.info("refreshing config");
+        var diff = readFeedsConfig();
+        lastKnownFileDateModified = lastModified;
+        return diff;
+    }
+
+    private void startWatching() {
+        var configFile = lookupConfigJsonFile().toPath();
+        try {
+            watchService = configFile.getFileSystem().newWatchService();
+            // the directory, as editors often replace the file instead of writing it
+            configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (Exception e) {
+            log.warn("config file can't be watched, polling only: " + e.getMessage());
+            return;
+        }
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "feeds-config-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var watchThread = new Thread(() -> watch(configFile.getFileName()), "feeds-config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watch(Path configFileName) {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            var relevant = watchKey.pollEvents().stream().anyMatch(event ->
+                    event.kind() == StandardWatchEventKinds.OVERFLOW || configFileName.equals(event.context()));
+            watchKey.reset();
+            if(relevant){
+                scheduleReload();
+            }
+        }
+    }
+
+    // an editor's save triggers several events, the reload waits until the file is quiet
+    private void scheduleReload() {
+        synchronized (pendingReloadLock) {
+            if(pendingReload != null){
+                pendingReload.cancel(false);
+            }
+            pendingReload = reloadExecutor.schedule(() -> {
+                try {
+                    refreshConfig();
+                } catch (Exception e) {
+                    log.warn("config reload failed: " + e.getMessage());
+                }
+            }, configReloadDebounce.toMillis(), TimeUnit.MILLISECONDS);
         }
     }
 
     public List<FeedsConfig.FeedsGroup> getFeedsGroups(){
-        if(feedsConfig == null){
-            readFeedsConfig();
+        return getFeedsConfigIndex().getGroups();
+    }
+
+    public FeedsConfigIndex getFeedsConfigIndex(){
+        if(feedsConfigIndex == null){
+            reloadAndNotify(() -> feedsConfigIndex == null ? readFeedsConfig() : null);
         }
-        return feedsConfig.getGroups();
+        return feedsConfigIndex;
     }
 
     public List<String> getIncludesForFeedConfig(FeedsConfig.FeedConfig feedConfig){
-        final List<String> allStrings = new LinkedList<>();
-        feedConfig.getIncludeRefs().forEach(in -> resolveList(in, allStrings));
-        return allStrings;
+        return lookupFilterPlan(feedConfig).includes();
     }
 
     public List<String> getExcludesForFeedConfig(FeedsConfig.FeedConfig feedConfig){
-        final List<String> allStrings = new LinkedList<>();
-        feedConfig.getExcludeRefs().forEach(in -> resolveList(in, allStrings));
-        return allStrings;
+        return lookupFilterPlan(feedConfig).excludes();
+    }
+
+    /**
+     * The listener is called with the structural difference after every reload that changed any feed.
+     */
+    public void addConfigChangeListener(Consumer<FeedsConfigDiff> listener){
+        configChangeListeners.add(listener);
+    }
+
+    /**
+     * Applies an update to the config file as it is on disk, inactive feeds included, and reloads it at once.
+     */
+    public void updateConfigFile(Consumer<FeedsConfig> update){
+        reloadAndNotify(() -> writeConfigFile(update));
+    }
+
+    @SneakyThrows
+    private synchronized FeedsConfigDiff writeConfigFile(Consumer<FeedsConfig> update){
+        if(useTestConfig){
+            throw new IllegalStateException("test config can't be updated");
+        }
+        var configFile = lookupConfigJsonFile().toPath();
+        var fileConfig = objectMapper.readValue(lookupConfigJsonDocument(), FeedsConfig.class);
+        update.accept(fileConfig);
+        var tempFile = configFile.resolveSibling(configFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(fileConfig));
+        Files.move(tempFile, configFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return reloadIfModified();
+    }
+
+    public File lookupConfigDirectory(){
+        return lookupConfigJsonFile().getParentFile();
     }
 
     public String getExternalURL(){
-        return feedsConfig.getExternalURL();
+        return getFeedsConfigIndex().getConfig().getExternalURL();
     }
 
     public void overwriteStartupDelayMinutes(long startupDelayMinutes){
@@ -81,23 +234,174 @@ public class FeedsConfigService {
         this.startupDelayMinutes = startupDelayMinutes;
     }
 
-    private void resolveList(String in, List<String> allStrings) {
-        feedsConfig.getLists().forEach(l -> l.keySet().forEach(k -> {
-            if(k.equalsIgnoreCase(in)){
-                allStrings.addAll(l.get(k));
-            }
-        }));
+    private FilterPlan lookupFilterPlan(FeedsConfig.FeedConfig feedConfig) {
+        var filterPlan = filterPlans.get(feedConfig.getKey());
+        if(filterPlan == null || !filterPlan.isCompiledFrom(feedConfig)){
+            // a feed config not (or no longer) part of the current config
+            filterPlan = FilterPlan.compile(feedConfig, indexLists(getFeedsConfigIndex().getConfig()));
+        }
+        return filterPlan;
     }
 
+    /**
+     * Reads the config and returns its difference to the previous one, null on the first read or without changes.
+     * The listeners are notified by the caller.
+     */
     @SneakyThrows
-    private synchronized void readFeedsConfig() {
+    private synchronized FeedsConfigDiff readFeedsConfig() {
         var localFeedsConfig = objectMapper.readValue(lookupConfigJsonDocument(), FeedsConfig.class);
         localFeedsConfig.getGroups().forEach(g -> {
             var groupFeeds = g.getGroupFeeds().stream().filter(FeedsConfig.FeedConfig::isActive).toList();
             g.setGroupFeeds(groupFeeds);
         });
-        feedsConfig = localFeedsConfig;
+        var localFeedsConfigIndex = FeedsConfigIndex.of(localFeedsConfig);
+        var previousFeedsConfig = feedsConfigIndex == null ? null : feedsConfigIndex.getConfig();
+        var previousFilterPlans = filterPlans;
+        var localFilterPlans = compileFilterPlans(previousFeedsConfig, previousFilterPlans, localFeedsConfig);
+        filterPlans = localFilterPlans;
+        feedsConfigIndex = localFeedsConfigIndex;
+        log.info("feeds configured: " + localFeedsConfigIndex.getFeeds().size());
         log.info("startupDelayMinutes=" + startupDelayMinutes);
+        if(previousFeedsConfig == null){
+            return null;
+        }
+        var diff = diff(previousFeedsConfig, previousFilterPlans, localFeedsConfig, localFilterPlans);
+        log.info("config changes - " + diff);
+        return diff.isEmpty() ? null : diff;
+    }
+
+    /**
+     * Queues the diff of the reload while the lock is held, so no later reload can overtake it. Listeners may
+     * download or read the config, so the caller waits for them only after the lock is released.
+     */
+    private void reloadAndNotify(Supplier<FeedsConfigDiff> reload) {
+        Future<?> notification;
+        synchronized (this) {
+            notification = queueNotification(reload.get());
+        }
+        try {
+            notification.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("config change notification failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private Future<?> queueNotification(FeedsConfigDiff diff) {
+        if(diff == null){
+            return CompletableFuture.completedFuture(null);
+        }
+        return notifyExecutor.submit(() -> configChangeListeners.forEach(listener -> {
+            try {
+                listener.accept(diff);
+            } catch (Exception e) {
+                log.warn("config change listener failed: " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Compiles the filter plans of the new config, taking over the previous plan of every feed whose refs and
+     * referenced lists are unchanged.
+     */
+    static Map<String, FilterPlan> compileFilterPlans(FeedsConfig previousConfig, Map<String, FilterPlan> previousPlans, FeedsConfig newConfig) {
+        var lists = indexLists(newConfig);
+        var changedLists = new HashSet<String>();
+        if(previousConfig != null){
+            var previousLists = indexLists(previousConfig);
+            changedLists.addAll(lists.keySet());
+            changedLists.addAll(previousLists.keySet());
+            changedLists.removeIf(name -> Objects.equals(lists.get(name), previousLists.get(name)));
+        }
+        var plans = new HashMap<String, FilterPlan>();
+        newConfig.getGroups().forEach(group -> group.getGroupFeeds().forEach(feedConfig -> {
+            var previousPlan = previousPlans.get(feedConfig.getKey());
+            if(previousPlan != null && previousPlan.isCompiledFrom(feedConfig) && previousPlan.refs().stream().noneMatch(changedLists::contains)){
+                plans.put(feedConfig.getKey(), previousPlan);
+            }else{
+                plans.put(feedConfig.getKey(), FilterPlan.compile(feedConfig, lists));
+            }
+        }));
+        return plans;
+    }
+
+    static FeedsConfigDiff diff(FeedsConfig previousConfig, Map<String, FilterPlan> previousPlans, FeedsConfig newConfig, Map<String, FilterPlan> newPlans) {
+        var diff = new FeedsConfigDiff();
+        var previousFeeds = new HashMap<String, FeedsConfigDiff.FeedChange>();
+        previousConfig.getGroups().forEach(group -> group.getGroupFeeds().forEach(feedConfig ->
+                previousFeeds.put(feedConfig.getKey(), new FeedsConfigDiff.FeedChange(group, feedConfig))));
+        // the external url is part of every processed description
+        var externalUrlChanged = !Objects.equals(previousConfig.getExternalURL(), newConfig.getExternalURL());
+
+        newConfig.getGroups().forEach(group -> group.getGroupFeeds().forEach(feedConfig -> {
+            var change = new FeedsConfigDiff.FeedChange(group, feedConfig);
+            var previous = previousFeeds.remove(feedConfig.getKey());
+            if(previous == null){
+                diff.getAdded().add(change);
+            }else if(!Objects.equals(previous.feedConfig().getUrl(), feedConfig.getUrl()) || !previous.group().getGroupId().equals(group.getGroupId())){
+                diff.getRemoved().add(previous);
+                diff.getAdded().add(change);
+            }else if(externalUrlChanged || !Objects.equals(previousPlans.get(feedConfig.getKey()), newPlans.get(feedConfig.getKey()))){
+                diff.getFiltersChanged().add(change);
+            }
+        }));
+        diff.getRemoved().addAll(previousFeeds.values());
+        return diff;
+    }
+
+    // list names are case-insensitive, lists with the same name are concatenated
+    private static Map<String, List<String>> indexLists(FeedsConfig config) {
+        var lists = new HashMap<String, List<String>>();
+        if(config.getLists() != null){
+            config.getLists().forEach(l -> l.forEach((name, strings) ->
+                    lists.computeIfAbsent(name.toLowerCase(Locale.ROOT), n -> new LinkedList<>()).addAll(strings)));
+        }
+        return lists;
+    }
+
+    /**
+     * The resolved include and exclude strings of one feed, and the refs they were compiled from.
+     */
+    record FilterPlan(List<String> includeRefs, List<String> excludeRefs, List<String> includes, List<String> excludes) {
+
+        static FilterPlan compile(FeedsConfig.FeedConfig feedConfig, Map<String, List<String>> lists) {
+            var includeRefs = copyOf(feedConfig.getIncludeRefs());
+            var excludeRefs = copyOf(feedConfig.getExcludeRefs());
+            return new FilterPlan(includeRefs, excludeRefs, resolve(includeRefs, lists), resolve(excludeRefs, lists));
+        }
+
+        boolean isCompiledFrom(FeedsConfig.FeedConfig feedConfig) {
+            return includeRefs.equals(copyOf(feedConfig.getIncludeRefs())) && excludeRefs.equals(copyOf(feedConfig.getExcludeRefs()));
+        }
+
+        List<String> refs() {
+            var refs = new LinkedList<String>();
+            includeRefs.forEach(ref -> refs.add(ref.toLowerCase(Locale.ROOT)));
+            excludeRefs.forEach(ref -> refs.add(ref.toLowerCase(Locale.ROOT)));
+            return refs;
+        }
+
+        // only the resolved strings matter for the processed content
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FilterPlan other && includes.equals(other.includes) && excludes.equals(other.excludes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(includes, excludes);
+        }
+
+        private static List<String> resolve(List<String> refs, Map<String, List<String>> lists) {
+            var allStrings = new LinkedList<String>();
+            refs.forEach(ref -> allStrings.addAll(lists.getOrDefault(ref.toLowerCase(Locale.ROOT), List.of())));
+            return List.copyOf(allStrings);
+        }
+
+        private static List<String> copyOf(List<String> refs) {
+            return refs == null ? List.of() : refs.stream().filter(Objects::nonNull).toList();
+        }
     }
 
     private String lookupConfigJsonDocument() {
@@ -2,11 +2,13 @@ package de.fimatas.feeds.components;
 
 import de.fimatas.feeds.model.FeedsCircuitBreaker;
 import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 
 import java.time.Duration;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -14,8 +16,19 @@ public class FeedsDownloadCircuitBreaker implements FeedsCircuitBreaker {
 
     private final CircuitBreakerRegistry circuitBreakerRegistry;
     private final Map<String, CircuitBreaker> circuitBreakerMap = new ConcurrentHashMap<>();
+    private final FeedsBackoff feedsBackoff;
+
+    private static final long MIN_WAIT_MILLIS = 1000;
 
     public FeedsDownloadCircuitBreaker() {
+        this(null);
+    }
+
+    /**
+     * With adaptive backoff, an open circuit breaker waits as long as the backoff of its feed instead of the fixed duration.
+     */
+    public FeedsDownloadCircuitBreaker(FeedsBackoff feedsBackoff) {
+        this.feedsBackoff = feedsBackoff;
         CircuitBreakerConfig defaultConfig = CircuitBreakerConfig.custom()
                 .failureRateThreshold(66)
                 .slidingWindowSize(3)
@@ -23,12 +36,26 @@ public class FeedsDownloadCircuitBreaker implements FeedsCircuitBreaker {
                 .permittedNumberOfCallsInHalfOpenState(1)
                 .minimumNumberOfCalls(3)
                 .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // local saturation is no failure of the upstream
+                .ignoreExceptions(FeedsRefreshThrottledException.class)
                 .build();
         this.circuitBreakerRegistry = CircuitBreakerRegistry.of(defaultConfig);
     }
 
     public CircuitBreaker getCircuitBreaker(FeedsConfig.FeedConfig feedConfig) {
-        return circuitBreakerMap.computeIfAbsent(feedConfig.getKey(),
-                key -> circuitBreakerRegistry.circuitBreaker("FeedsDownloadCircuitBreaker-" + key));
+        return circuitBreakerMap.computeIfAbsent(feedConfig.getKey(), key -> {
+            if(feedsBackoff == null || !feedsBackoff.isAdaptiveBackoff()){
+                return circuitBreakerRegistry.circuitBreaker("FeedsDownloadCircuitBreaker-" + key);
+            }
+            var config = CircuitBreakerConfig.from(circuitBreakerRegistry.getDefaultConfig())
+                    .waitIntervalFunctionInOpenState(attempts -> Math.max(MIN_WAIT_MILLIS, feedsBackoff.remaining(key).toMillis()))
+                    .build();
+            return circuitBreakerRegistry.circuitBreaker("FeedsDownloadCircuitBreaker-" + key, config);
+        });
+    }
+
+    @Override
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakerMap);
     }
 }
@@ -2,27 +2,37 @@ package de.fimatas.feeds.components;
 
 import com.rometools.rome.feed.WireFeed;
 import com.rometools.rome.feed.rss.Channel;
+import com.rometools.rome.feed.rss.Item;
 import com.rometools.rome.io.FeedException;
-import com.rometools.rome.io.WireFeedInput;
 import de.fimatas.feeds.model.*;
 import de.fimatas.feeds.util.FeedsUtil;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.apachecommons.CommonsLog;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.scheduling.annotation.Scheduled;
 
-import java.io.StringReader;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static de.fimatas.feeds.model.FeedsLogMessages.*;
 
@@ -30,28 +40,58 @@ import static de.fimatas.feeds.model.FeedsLogMessages.*;
 public class FeedsDownloadService {
 
     public FeedsDownloadService(
-            FeedsConfigService feedsConfigService, FeedsProcessingService feedsProcessingService, FeedsHttpClient feedsHttpClient, FeedsTimer feedsTimer) {
+            FeedsConfigService feedsConfigService, FeedsProcessingService feedsProcessingService, FeedsHttpClient feedsHttpClient, FeedsTimer feedsTimer,
+            FeedsLeaderElection feedsLeaderElection, FeedsAdaptiveTtl feedsAdaptiveTtl, FeedsRefreshGovernor feedsRefreshGovernor,
+            FeedsBackoff feedsBackoff, FeedsRefreshPacer feedsRefreshPacer) {
         this.feedsConfigService = feedsConfigService;
         this.feedsProcessingService = feedsProcessingService;
         this.feedsHttpClient = feedsHttpClient;
         this.feedsTimer = feedsTimer;
+        this.feedsLeaderElection = feedsLeaderElection;
+        this.feedsAdaptiveTtl = feedsAdaptiveTtl;
+        this.feedsRefreshGovernor = feedsRefreshGovernor;
+        this.feedsBackoff = feedsBackoff;
+        this.feedsRefreshPacer = feedsRefreshPacer;
+        this.feedsDownloadCircuitBreaker = new FeedsDownloadCircuitBreaker(feedsBackoff);
     }
 
     private final FeedsConfigService feedsConfigService;
     private final FeedsProcessingService feedsProcessingService;
     private final FeedsHttpClient feedsHttpClient;
     private final FeedsTimer feedsTimer;
+    private final FeedsLeaderElection feedsLeaderElection;
+    private final FeedsAdaptiveTtl feedsAdaptiveTtl;
+    private final FeedsRefreshGovernor feedsRefreshGovernor;
+    private final FeedsBackoff feedsBackoff;
+    private final FeedsRefreshPacer feedsRefreshPacer;
 
     @Value("${feeds.schedulerDelay}")
     protected Duration schedulerDelay;
 
+    @Value("${feeds.retainRawContent:true}")
+    protected boolean retainRawContent = true;
+
+    private static final int MAX_ADDED_ON_DEMAND = 10;
+
+    private final List<Consumer<FeedCommit>> commitListeners = new CopyOnWriteArrayList<>();
+
+    // groups changed on demand, a storage that writes whole groups gets them with the next scheduled write
+    private final Set<String> unwrittenGroupIds = ConcurrentHashMap.newKeySet();
+
+    // downloads of added feeds, off the thread that reloaded the config
+    private ExecutorService configChangeExecutor = null;
+
     protected LocalDateTime lastSchedulerRun = null;
     protected LocalDateTime startupTime = null;
 
     private final LocalTime dailyStartTime = LocalTime.of(5, 20);
     private final LocalTime dailyEndTime = LocalTime.of(22, 30);
 
-    protected FeedsCircuitBreaker feedsDownloadCircuitBreaker = new FeedsDownloadCircuitBreaker();
+    protected FeedsCircuitBreaker feedsDownloadCircuitBreaker;
+
+    public FeedsCircuitBreaker getFeedsDownloadCircuitBreaker() {
+        return feedsDownloadCircuitBreaker;
+    }
 
     @PostConstruct
     protected void init() {
@@ -61,33 +101,124 @@ public class FeedsDownloadService {
             throw new IllegalStateException("FeedsCache is not valid");
         }
         log.info("schedulerDelay Minutes: " + schedulerDelay.toMinutes());
+        configChangeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "feeds-config-change");
+            thread.setDaemon(true);
+            return thread;
+        });
+        feedsConfigService.addConfigChangeListener(this::configChanged);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        if(configChangeExecutor != null){
+            configChangeExecutor.shutdownNow();
+        }
+        if(!unwrittenGroupIds.isEmpty()){
+            try {
+                FeedsCache.getInstance().writeGroupsToStorage(takeUnwrittenGroups());
+            } catch (Exception e) {
+                log.warn("groups refreshed on demand not written on shutdown: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops removed feeds from the cache at once. In group mode, a few feeds added to an already cached group are
+     * downloaded in the background instead of waiting for the group's next refresh; bulk additions are left to the
+     * group refresh and its run budget. The per-feed scheduler queues added feeds itself.
+     */
+    protected void configChanged(FeedsConfigDiff diff) {
+        if(startupTime == null || !feedsLeaderElection.isLeader() || FeedsCache.getInstance().isNotValid()){
+            return;
+        }
+        var updatedGroups = new LinkedHashMap<String, FeedsCache.FeedsCacheGroup>();
+        for(var change : diff.getRemoved()){
+            var groupCache = FeedsCache.getInstance().lookupGroup(change.group().getGroupId());
+            if(groupCache != null && FeedsCache.getInstance().removeFeed(groupCache, change.feedConfig().getKey())){
+                updatedGroups.put(groupCache.getGroupId(), groupCache);
+            }
+        }
+        if(!updatedGroups.isEmpty()){
+            log.info("removed feeds dropped from cache - groups: " + updatedGroups.keySet());
+            FeedsCache.getInstance().writeGroupsToStorage(updatedGroups.values());
+        }
+        if(feedsConfigService.isPerFeedScheduling() || diff.getAdded().isEmpty() || skipFeedRefresh()){
+            return;
+        }
+        if(diff.getAdded().size() > MAX_ADDED_ON_DEMAND){
+            log.info("added feeds left to the group refresh: " + diff.getAdded().size());
+            return;
+        }
+        for(var change : diff.getAdded()){
+            var groupCache = FeedsCache.getInstance().lookupGroup(change.group().getGroupId());
+            if(groupCache != null && !groupCache.getGroupFeeds().isEmpty()){
+                try {
+                    configChangeExecutor.execute(() -> refreshAddedFeed(change));
+                } catch (RejectedExecutionException e) {
+                    log.debug("added feed left to the group refresh: " + change.feedConfig().getKey());
+                }
+            }
+        }
+    }
+
+    private void refreshAddedFeed(FeedsConfigDiff.FeedChange change) {
+        try {
+            refreshFeedOnDemand(change.group(), change.feedConfig());
+        } catch (Exception e) {
+            log.warn("added feed '" + change.feedConfig().getKey() + "' not refreshed: " + e.getMessage());
+        }
     }
 
     @Scheduled(initialDelay = 1000, fixedDelayString = "${feeds.schedulerDelay}")
     public void refreshScheduler() {
-        var isUpdated = false;
+        var updatedGroups = new LinkedList<FeedsCache.FeedsCacheGroup>();
         try {
             log.debug("call refreshScheduler");
+            if (feedsConfigService.isPerFeedScheduling()) return;
             if (skip()) return;
 
             lastSchedulerRun = feedsTimer.localDateTimeNow();
-            for(var group : feedsConfigService.getFeedsGroups()){
-                if(refresh(group)){
-                    isUpdated = true;
+            var refreshRun = feedsRefreshGovernor.startRun("refreshScheduler");
+            var fetchCycle = new FetchCycle();
+            for(var group : prioritize(feedsConfigService.getFeedsGroups())){
+                if(refresh(group, refreshRun, fetchCycle)){
+                    updatedGroups.add(FeedsCache.getInstance().lookupGroup(group.getGroupId()));
                 }
             }
-            if (isUpdated) {
-                log.info("writeToCacheFile");
-                FeedsCache.getInstance().writeToCacheFile();
+            takeUnwrittenGroups().stream().filter(group -> !updatedGroups.contains(group)).forEach(updatedGroups::add);
+            if (!updatedGroups.isEmpty()) {
+                log.info("writeToStorage");
+                FeedsCache.getInstance().writeGroupsToStorage(updatedGroups);
             }
+            refreshRun.report();
         } catch (Exception e) {
-            FeedsCache.setExceptionTimestampAndWriteToFile();
+            FeedsCache.setExceptionTimestampAndWriteToStorage();
             log.warn("refreshScheduler caught exception", e);
         }
     }
 
     private boolean skip() {
 
+        if(skipRefresh()){
+            return true;
+        }
+        if (lastSchedulerRun.plus(schedulerDelay).isAfter(feedsTimer.localDateTimeNow())) {
+            log.warn(REFRESH_SCHEDULER_CALLED_TOO_FREQUENTLY);
+            return true;
+        }
+        return skipAfterException();
+    }
+
+    /**
+     * Checks for the per-feed scheduler, which has no fixed run interval.
+     */
+    public boolean skipFeedRefresh() {
+        return skipRefresh() || skipAfterException();
+    }
+
+    private boolean skipRefresh() {
+
         if(startupTime == null){
             log.warn("service is not initialized");
             return true;
@@ -98,6 +229,11 @@ public class FeedsDownloadService {
             return true;
         }
 
+        if(!feedsLeaderElection.isLeader()){
+            log.debug(SKIPPING_REFRESH_FOLLOWER);
+            return true;
+        }
+
         if(FeedsCache.getInstance().isNotValid()){
             log.warn(CACHE_IS_NOT_VALID);
             return true;
@@ -112,10 +248,10 @@ public class FeedsDownloadService {
             log.debug(REFRESH_SCHEDULER_DAILY_END_TIME_REACHED);
             return true;
         }
-        if (lastSchedulerRun.plus(schedulerDelay).isAfter(feedsTimer.localDateTimeNow())) {
-            log.warn(REFRESH_SCHEDULER_CALLED_TOO_FREQUENTLY);
-            return true;
-        }
+        return false;
+    }
+
+    private boolean skipAfterException() {
         if (FeedsCache.getInstance().getExceptionTimestamp() != null && FeedsCache.getInstance().getExceptionTimestamp()
                 .plus(getMaxRequestDelay()).isAfter(feedsTimer.localDateTimeNow())) {
             log.warn(REFRESH_SCHEDULER_WITH_EXCEPTION_CALLED_TOO_FREQUENTLY);
@@ -124,7 +260,26 @@ public class FeedsDownloadService {
         return false;
     }
 
-    private boolean refresh(FeedsConfig.FeedsGroup groupConfig) {
+    /**
+     * With a run budget, the most overdue groups go first, so deferred groups are served in the next run.
+     */
+    private List<FeedsConfig.FeedsGroup> prioritize(List<FeedsConfig.FeedsGroup> groups) {
+        if(!feedsRefreshGovernor.isBudgeted()){
+            return groups;
+        }
+        return groups.stream().sorted(Comparator.comparingDouble(this::overdueRatio).reversed()).toList();
+    }
+
+    private double overdueRatio(FeedsConfig.FeedsGroup groupConfig) {
+        var groupCache = FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId());
+        if(groupCache == null || groupCache.getGroupFeeds().isEmpty()){
+            return Double.MAX_VALUE;
+        }
+        var maxLastRefresh = groupCache.getGroupFeeds().values().stream().map(FeedsCache.FeedCacheEntry::getLastRefresh).max(LocalDateTime::compareTo).orElseThrow();
+        return (double) Duration.between(maxLastRefresh, feedsTimer.localDateTimeNow()).toMinutes() / getDelayMinutes(groupConfig);
+    }
+
+    private boolean refresh(FeedsConfig.FeedsGroup groupConfig, FeedsRefreshGovernor.RefreshRun refreshRun, FetchCycle fetchCycle) {
 
         var groupCache = FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId());
         if (groupCache == null) {
@@ -132,7 +287,13 @@ public class FeedsDownloadService {
         }
 
         // check interval against cache
-        if(!groupCache.getGroupFeeds().isEmpty()){
+        var groupFeeds = groupCache.getGroupFeeds();
+        if(feedsAdaptiveTtl.isAdaptiveTtl()){
+            if(groupConfig.getGroupFeeds().stream().noneMatch(feedConfig -> isFeedDue(groupFeeds.get(feedConfig.getKey())))){
+                log.debug("group '" + groupConfig.getGroupId() + "' " + SKIPPING_REFRESH_CACHE + ": no feed due");
+                return false;
+            }
+        }else if(!groupFeeds.isEmpty()){
             var delayMinutes = getDelayMinutes(groupConfig);
             var maxLastRefresh = groupCache.getGroupFeeds().values().stream().map(FeedsCache.FeedCacheEntry::getLastRefresh).max(LocalDateTime::compareTo).orElseThrow();
             var maxDurationSinceLastRefresh = Duration.between(maxLastRefresh, feedsTimer.localDateTimeNow());
@@ -144,39 +305,239 @@ public class FeedsDownloadService {
 
         // check interval against method call
         if(groupCache.getLastRefreshMethodCall() != null &&
-                Duration.between(groupCache.getLastRefreshMethodCall(), feedsTimer.localDateTimeNow()).toMinutes() < groupConfig.getGroupDefaultDurationMinutes()){
+                Duration.between(groupCache.getLastRefreshMethodCall(), feedsTimer.localDateTimeNow()).toMinutes()
+                        < Math.min(groupConfig.getGroupDefaultDurationMinutes(), getDelayMinutes(groupConfig))){
             log.debug("group '" + groupConfig.getGroupId() + "' " + SKIPPING_REFRESH_METHOD_CALL + ": " + groupCache.getLastRefreshMethodCall());
             return false;
         }
 
+        // check run budget
+        if(!refreshRun.fits(groupConfig.getGroupId())){
+            log.info("group '" + groupConfig.getGroupId() + "' " + SKIPPING_REFRESH_BUDGET);
+            refreshRun.deferred(groupConfig.getGroupFeeds().size());
+            return false;
+        }
+
         // finally refresh
+        var groupRefreshStart = feedsTimer.localDateTimeNow();
+        groupCache.setLastRefreshMethodCall(groupRefreshStart);
+
+        // every feed is published as soon as it completes, not when the slowest feed of the group is done
+        var groupKeys = new HashSet<String>();
+        for(FeedsConfig.FeedConfig feedConfig : FeedsRefreshPacer.interleaveHosts(groupConfig.getGroupFeeds(), FeedsConfig.FeedConfig::getUrl)){
+            groupKeys.add(feedConfig.getKey());
+            // with adaptive TTLs every feed keeps its own interval, the others of the group aren't downloaded early
+            if(feedsAdaptiveTtl.isAdaptiveTtl() && !isFeedDue(groupFeeds.get(feedConfig.getKey()))){
+                continue;
+            }
+            // only a real download waits for its turn
+            if(!fetchCycle.isFetched(feedConfig.getUrl()) && isRefreshPermitted(feedConfig)){
+                feedsRefreshPacer.pace(feedConfig.getUrl());
+            }
+            Map<String, FeedsCache.FeedCacheEntry> refreshedCache = new HashMap<>();
+            refreshFeedWithCircuitBreaker(groupConfig, feedConfig, refreshedCache, fetchCycle);
+            commitFeed(groupCache, refreshedCache.get(feedConfig.getKey()));
+        }
+        FeedsCache.getInstance().retainGroupFeeds(groupCache, groupKeys);
+        refreshRun.refreshed(groupConfig.getGroupId(), groupRefreshStart);
+
+        log.info("group '" + groupConfig.getGroupId() + "' " + NEW_OVERALL_DELAY + ": " + getDelayMinutes(groupConfig) + " minutes (default: " +
+                groupConfig.getGroupDefaultDurationMinutes() + ") - next refresh: " +
+                (feedsTimer.localTimeNow().plusMinutes(getDelayMinutes(groupConfig))).truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME));
+
+        return true;
+    }
+
+    /**
+     * Refreshes one feed and commits it to its cache group at once. Used by the per-feed scheduler, which shares
+     * the fetch cycle between the feeds of one wake-up.
+     */
+    public FeedsCache.FeedCacheEntry refreshSingleFeed(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, FetchCycle fetchCycle) {
+
+        var groupCache = FeedsCache.getInstance().defineGroup(groupConfig.getGroupId());
         groupCache.setLastRefreshMethodCall(feedsTimer.localDateTimeNow());
 
         Map<String, FeedsCache.FeedCacheEntry> refreshedCache = new HashMap<>();
-        for(FeedsConfig.FeedConfig feedConfig : groupConfig.getGroupFeeds()){
-            var decoratedRunnable = CircuitBreaker.decorateRunnable(feedsDownloadCircuitBreaker.getCircuitBreaker(feedConfig),
-                   () -> refreshFeed(groupConfig, feedConfig, refreshedCache));
+        refreshFeedWithCircuitBreaker(groupConfig, feedConfig, refreshedCache, fetchCycle);
+
+        var feedCacheEntry = refreshedCache.get(feedConfig.getKey());
+        commitFeed(groupCache, feedCacheEntry);
+        return feedCacheEntry;
+    }
+
+    /**
+     * Refreshes one feed on behalf of a request (refresh-through, stale content) and commits it. The group's schedule
+     * is left untouched. Returns null if the refresh is not possible at the moment: the same checks as for the
+     * schedulers (e.g. daily time window, pause after an exception), open circuit breaker or url fuse. The download
+     * waits for its turn with the pacer. A storage that writes whole groups gets the group with the next scheduler
+     * run instead of once per feed.
+     */
+    public FeedsCache.FeedCacheEntry refreshFeedOnDemand(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig) {
+
+        if(skipFeedRefresh()){
+            return null;
+        }
+        if(!isRefreshPermitted(feedConfig)){
+            log.info("refresh-through '" + feedConfig.getKey() + "' skipped: circuit breaker or url fuse");
+            return null;
+        }
+        feedsRefreshPacer.pace(feedConfig.getUrl());
+
+        var groupCache = FeedsCache.getInstance().defineGroup(groupConfig.getGroupId());
+        Map<String, FeedsCache.FeedCacheEntry> refreshedCache = new HashMap<>();
+        refreshFeedWithCircuitBreaker(groupConfig, feedConfig, refreshedCache, new FetchCycle());
+
+        var feedCacheEntry = refreshedCache.get(feedConfig.getKey());
+        commitFeed(groupCache, feedCacheEntry);
+        if(!FeedsCache.getInstance().isIncrementalStorage()){
+            unwrittenGroupIds.add(groupCache.getGroupId());
+        }
+        return feedCacheEntry;
+    }
+
+    /**
+     * The groups refreshed on demand since the last call, for the next write of a storage that writes whole groups.
+     */
+    public List<FeedsCache.FeedsCacheGroup> takeUnwrittenGroups() {
+        var groups = new LinkedList<FeedsCache.FeedsCacheGroup>();
+        var iterator = unwrittenGroupIds.iterator();
+        while (iterator.hasNext()) {
+            var groupCache = FeedsCache.getInstance().lookupGroup(iterator.next());
+            iterator.remove();
+            if(groupCache != null){
+                groups.add(groupCache);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * False while the feed's circuit breaker is open, it is backing off or its url fuse blocks another download.
+     */
+    public boolean isRefreshPermitted(FeedsConfig.FeedConfig feedConfig) {
+        if(feedsBackoff.isBackingOff(feedConfig.getKey())){
+            return false;
+        }
+        var circuitBreakerState = feedsDownloadCircuitBreaker.getCircuitBreaker(feedConfig).getState();
+        if(circuitBreakerState == CircuitBreaker.State.OPEN || circuitBreakerState == CircuitBreaker.State.FORCED_OPEN){
+            return false;
+        }
+        return !feedsHttpClient.isUrlFused(feedConfig.getUrl());
+    }
+
+    /**
+     * Publishes the feed to readers, and to the storage if it can store single feeds.
+     */
+    private void commitFeed(FeedsCache.FeedsCacheGroup groupCache, FeedsCache.FeedCacheEntry feedCacheEntry) {
+        var previousEntry = feedCacheEntry == null ? null : FeedsCache.getInstance().lookupFeed(feedCacheEntry.getKey());
+        FeedsCache.getInstance().updateFeed(groupCache, feedCacheEntry);
+        notifyCommitListeners(new FeedCommit(groupCache.getGroupId(), previousEntry, feedCacheEntry));
+        if(FeedsCache.getInstance().isIncrementalStorage()){
+            FeedsCache.getInstance().writeFeedToStorage(groupCache, feedCacheEntry);
+        }
+    }
+
+    /**
+     * Listeners are called on the refreshing thread, right after a feed was published to readers.
+     */
+    public void addCommitListener(Consumer<FeedCommit> listener){
+        commitListeners.add(listener);
+    }
+
+    private void notifyCommitListeners(FeedCommit commit) {
+        if(commit.committedEntry() == null){
+            return;
+        }
+        commitListeners.forEach(listener -> {
             try {
-                decoratedRunnable.run();
+                listener.accept(commit);
             } catch (Exception e) {
-                fallback(groupConfig, feedConfig, e, refreshedCache);
+                log.warn("commit listener failed: " + e.getMessage());
             }
+        });
+    }
+
+    private void refreshFeedWithCircuitBreaker(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, Map<String, FeedsCache.FeedCacheEntry> refreshedCache, FetchCycle fetchCycle) {
+        if(feedsBackoff.isBackingOff(feedConfig.getKey())){
+            log.info("-> refreshFeed BACKOFF: " + feedConfig.getName() + " until " + feedsBackoff.retryNotBefore(feedConfig.getKey()).orElseThrow());
+            keepCachedEntry(groupConfig, feedConfig, refreshedCache);
+            return;
         }
+        var decoratedRunnable = CircuitBreaker.decorateRunnable(feedsDownloadCircuitBreaker.getCircuitBreaker(feedConfig),
+               () -> refreshFeed(groupConfig, feedConfig, refreshedCache, fetchCycle));
+        try {
+            decoratedRunnable.run();
+        } catch (FeedsRefreshThrottledException e) {
+            log.info("-> refreshFeed THROTTLED: " + feedConfig.getName() + ": " + e.getMessage());
+            keepCachedEntry(groupConfig, feedConfig, refreshedCache);
+        } catch (Exception e) {
+            fallback(groupConfig, feedConfig, e, refreshedCache);
+        }
+    }
 
-        FeedsCache.getInstance().updateGroupFeeds(groupCache, refreshedCache);
+    private void refreshFeed(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, Map<String, FeedsCache.FeedCacheEntry> refreshedCache, FetchCycle fetchCycle) {
 
-        log.info("group '" + groupConfig.getGroupId() + "' " + NEW_OVERALL_DELAY + ": " + getDelayMinutes(groupConfig) + " minutes (default: " +
-                groupConfig.getGroupDefaultDurationMinutes() + ") - next refresh: " +
-                (feedsTimer.localTimeNow().plusMinutes(getDelayMinutes(groupConfig))).truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME));
+        // failures are recorded before the circuit breaker sees them, so its wait already covers them. Local
+        // throttling (url fuse, download permit) is no failure of the upstream and isn't recorded.
+        FeedsHttpClientResponse response;
+        try {
+            response = fetchCycle.fetch(feedConfig.getUrl(), url -> feedsRefreshGovernor.download(() -> feedsHttpClient.getFeeds(url)));
+        } catch (FeedsDownloadException e) {
+            feedsBackoff.recordFailure(feedConfig.getKey(), e);
+            throw e;
+        }
+        String processedFeed;
+        try {
+            processedFeed = feedsProcessingService.processFeed(response, feedConfig);
+        } catch (RuntimeException e) {
+            // the upstream's content can't be parsed
+            feedsBackoff.recordFailure(feedConfig.getKey(), e);
+            throw e;
+        }
+        feedsBackoff.recordSuccess(feedConfig.getKey());
+        handleRefreshSuccess(groupConfig, feedConfig, processedFeed, response, refreshedCache);
+    }
 
-        return true;
+    /**
+     * A feed published to readers; previousEntry is null for its first content.
+     */
+    public record FeedCommit(String groupId, FeedsCache.FeedCacheEntry previousEntry, FeedsCache.FeedCacheEntry committedEntry) {
     }
 
-    private void refreshFeed(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, Map<String, FeedsCache.FeedCacheEntry> refreshedCache) {
+    /**
+     * Responses of one refresh cycle by url, so feed configs sharing an url download and parse it only once. The
+     * first caller for an url downloads it, every other caller gets the same response or the same error.
+     */
+    public static class FetchCycle {
 
-        var response = feedsHttpClient.getFeeds(feedConfig.getUrl());
-        String processedFeed = feedsProcessingService.processFeed(response, feedConfig);
-        handleRefreshSuccess(groupConfig, feedConfig, processedFeed, response, refreshedCache);
+        private final Map<String, CompletableFuture<FeedsHttpClientResponse>> responses = new ConcurrentHashMap<>();
+
+        public boolean isFetched(String url) {
+            return responses.containsKey(url);
+        }
+
+        FeedsHttpClientResponse fetch(String url, Function<String, FeedsHttpClientResponse> download) {
+            var created = new CompletableFuture<FeedsHttpClientResponse>();
+            var future = responses.computeIfAbsent(url, u -> created);
+            if(future == created){
+                // outside of computeIfAbsent, the map must not be blocked by a download
+                try {
+                    created.complete(download.apply(url));
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                }
+            }else{
+                log.debug("-> fetched once in this cycle: " + url);
+            }
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if(e.getCause() instanceof RuntimeException runtimeException){
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
     }
 
     private void fallback(FeedsConfig.FeedsGroup groupConfig,  FeedsConfig.FeedConfig feedConfig, Exception e, Map<String, FeedsCache.FeedCacheEntry> refreshedCache) {
@@ -195,34 +556,62 @@ public class FeedsDownloadService {
     }
 
     private void handleRefreshError(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, Map<String, FeedsCache.FeedCacheEntry> refreshedCache){
+        keepCachedEntry(groupConfig, feedConfig, refreshedCache);
+        refreshedCache.get(feedConfig.getKey()).increaseRefreshErrorCounter();
+    }
+
+    private void keepCachedEntry(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, Map<String, FeedsCache.FeedCacheEntry> refreshedCache){
         var groupCache = FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId());
         if(groupCache.getGroupFeeds().containsKey(feedConfig.getKey())){
            refreshedCache.put(feedConfig.getKey(), groupCache.getGroupFeeds().get(feedConfig.getKey()));
         }else{
             newEmptyFeedCacheEntry(groupConfig, feedConfig, null, new FeedsHttpClientResponse(null, -1, null), refreshedCache);
         }
-        refreshedCache.get(feedConfig.getKey()).increaseRefreshErrorCounter();
     }
 
     private TtlInfo newEmptyFeedCacheEntry(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig, String feed, FeedsHttpClientResponse response, Map<String, FeedsCache.FeedCacheEntry> refreshedCache) {
-        var ttl = getTtlMinutes(response, feedConfig.getKey());
+        var wireFeed = parseWireFeed(response);
+        var ttl = getTtlMinutes(response, feedConfig.getKey(), wireFeed);
         FeedsCache.FeedCacheEntry feedCacheEntry = new FeedsCache.FeedCacheEntry();
         feedCacheEntry.setKey(feedConfig.getKey());
         feedCacheEntry.setLastRefresh(feedsTimer.localDateTimeNow());
         feedCacheEntry.setRefreshErrorCounter(0);
         feedCacheEntry.setContent(feed);
+        if(retainRawContent && feed != null){
+            feedCacheEntry.setRawContent(response.getBody());
+        }
         feedCacheEntry.setHeaderLastModified(getHeaderValue(response, HttpHeaders.LAST_MODIFIED));
         feedCacheEntry.setHeaderContentType(getHeaderValue(response, HttpHeaders.CONTENT_TYPE));
+        if(feedsAdaptiveTtl.isAdaptiveTtl()){
+            ttl = adaptTtl(groupConfig, feedCacheEntry, wireFeed, ttl);
+        }
         feedCacheEntry.setTtl(ttl.orElse(defaultTtl(groupConfig)));
         refreshedCache.put(feedConfig.getKey(), feedCacheEntry);
         return feedCacheEntry.getTtl();
     }
 
-    private Optional<TtlInfo> getTtlMinutes(FeedsHttpClientResponse response, String key) {
+    private Optional<TtlInfo> adaptTtl(FeedsConfig.FeedsGroup groupConfig, FeedsCache.FeedCacheEntry feedCacheEntry, WireFeed wireFeed, Optional<TtlInfo> upstreamTtl) {
+        var groupCache = FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId());
+        var previousEntry = groupCache == null ? null : groupCache.getGroupFeeds().get(feedCacheEntry.getKey());
+        var itemsPublished = new LinkedList<LocalDateTime>();
+        if(wireFeed instanceof Channel channel){
+            channel.getItems().stream().map(Item::getPubDate).filter(Objects::nonNull)
+                    .forEach(pubDate -> itemsPublished.add(LocalDateTime.ofInstant(pubDate.toInstant(), ZoneId.systemDefault())));
+        }
+        feedsAdaptiveTtl.updateItemStatistics(previousEntry, feedCacheEntry, itemsPublished);
+        var adaptiveTtl = feedsAdaptiveTtl.adaptiveTtl(feedCacheEntry);
+        if(adaptiveTtl.isEmpty()){
+            return upstreamTtl;
+        }
+        // the upstream's own caching hints are never undercut
+        return upstreamTtl.isPresent() && upstreamTtl.get().getTtl().compareTo(adaptiveTtl.get().getTtl()) > 0 ? upstreamTtl : adaptiveTtl;
+    }
+
+    private Optional<TtlInfo> getTtlMinutes(FeedsHttpClientResponse response, String key, WireFeed wireFeed) {
         var optionals = List.of(
                 getTtlMinutesFromHeaderMaxAge(response),
                 getTtlMinutesFromHeaderRetryAfter(response, key),
-                getTtlMinutesFromFeed(response));
+                getTtlMinutesFromFeed(wireFeed));
         return optionals.stream().filter(Optional::isPresent).map(Optional::get).max(Comparator.comparing(TtlInfo::getTtl));
     }
 
@@ -258,35 +647,41 @@ public class FeedsDownloadService {
         return Optional.empty();
     }
 
-    private Optional<TtlInfo> getTtlMinutesFromFeed(FeedsHttpClientResponse response) {
+    private static WireFeed parseWireFeed(FeedsHttpClientResponse response) {
         if(response.getBody() == null || response.getBody().isEmpty()){
-            return Optional.empty();
+            return null;
         }
         try {
-            WireFeed wireFeed = new WireFeedInput().build(new StringReader(Objects.requireNonNull(response.getBody())));
-            if (wireFeed instanceof Channel channel && channel.getTtl() > 0) {
-                return Optional.of(new TtlInfo(Duration.ofMinutes(channel.getTtl()), "ttl"));
-            }
-            if(wireFeed.getForeignMarkup() != null) {
-                var updatePeriod = FeedsUtil.getForeignMarkupValue(wireFeed, "updatePeriod");
-                var updateFrequency =FeedsUtil.getForeignMarkupValue(wireFeed, "updateFrequency");
-                var updateBase = FeedsUtil.getForeignMarkupValue(wireFeed, "updateBase");
-                if(updatePeriod != null && updateFrequency != null) {
-                    var updateDuration = Duration.ofMinutes(getPeriodMinutes(updatePeriod) / Long.parseLong(updateFrequency));
-                    if(updateBase != null) {
-                        DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME;
-                        ZonedDateTime dateTime = ZonedDateTime.parse(updateBase, formatter);
-                        if(dateTime.isAfter(feedsTimer.zonedDateTimeNow())) {
-                            var baseDuration = Duration.between(feedsTimer.zonedDateTimeNow(), dateTime);
-                            return Optional.of(new TtlInfo(baseDuration.plus(updateDuration), "updatePeriod+base"));
-                        }
+            return FeedsUtil.parseFeed(response);
+        } catch (FeedException e) {
+            return null;
+        }
+    }
+
+    private Optional<TtlInfo> getTtlMinutesFromFeed(WireFeed wireFeed) {
+        if(wireFeed == null){
+            return Optional.empty();
+        }
+        if (wireFeed instanceof Channel channel && channel.getTtl() > 0) {
+            return Optional.of(new TtlInfo(Duration.ofMinutes(channel.getTtl()), "ttl"));
+        }
+        if(wireFeed.getForeignMarkup() != null) {
+            var updatePeriod = FeedsUtil.getForeignMarkupValue(wireFeed, "updatePeriod");
+            var updateFrequency =FeedsUtil.getForeignMarkupValue(wireFeed, "updateFrequency");
+            var updateBase = FeedsUtil.getForeignMarkupValue(wireFeed, "updateBase");
+            if(updatePeriod != null && updateFrequency != null) {
+                var updateDuration = Duration.ofMinutes(getPeriodMinutes(updatePeriod) / Long.parseLong(updateFrequency));
+                if(updateBase != null) {
+                    DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME;
+                    ZonedDateTime dateTime = ZonedDateTime.parse(updateBase, formatter);
+                    if(dateTime.isAfter(feedsTimer.zonedDateTimeNow())) {
+                        var baseDuration = Duration.between(feedsTimer.zonedDateTimeNow(), dateTime);
+                        return Optional.of(new TtlInfo(baseDuration.plus(updateDuration), "updatePeriod+base"));
                     }
-                    return Optional.of(new TtlInfo(updateDuration, "updatePeriod"));
                 }
-
+                return Optional.of(new TtlInfo(updateDuration, "updatePeriod"));
             }
-        } catch (FeedException e) {
-            return Optional.empty();
+
         }
         return Optional.empty();
     }
@@ -302,14 +697,26 @@ public class FeedsDownloadService {
         };
     }
 
+    /**
+     * Interval of a group: the longest TTL of its feeds, at least the group default. With adaptive TTLs the
+     * shortest TTL of its feeds, the group is due with its first due feed.
+     */
     private long getDelayMinutes(FeedsConfig.FeedsGroup groupConfig) {
         var groupCache = FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId());
         var ttlList = groupCache.getGroupFeeds().values().stream().map(FeedsCache.FeedCacheEntry::getTtl).toList();
+        if(feedsAdaptiveTtl.isAdaptiveTtl() && !ttlList.isEmpty()){
+            return ttlList.stream().min(Comparator.comparing(TtlInfo::getTtl)).map(t -> t.getTtl().toMinutes()).orElseThrow();
+        }
         var mutableTtlList = new ArrayList<>(ttlList);
         mutableTtlList.add(defaultTtl(groupConfig));
         return mutableTtlList.stream().max(Comparator.comparing(TtlInfo::getTtl)).map(t -> t.getTtl().toMinutes()).orElseThrow();
     }
 
+    private boolean isFeedDue(FeedsCache.FeedCacheEntry feedCacheEntry) {
+        return feedCacheEntry == null || feedCacheEntry.getTtl() == null || feedCacheEntry.getLastRefresh() == null
+                || !feedCacheEntry.getLastRefresh().plus(feedCacheEntry.getTtl().getTtl()).isAfter(feedsTimer.localDateTimeNow());
+    }
+
     private static TtlInfo defaultTtl(FeedsConfig.FeedsGroup groupConfig) {
         return new TtlInfo(Duration.ofMinutes(groupConfig.getGroupDefaultDurationMinutes()), "default");
     }
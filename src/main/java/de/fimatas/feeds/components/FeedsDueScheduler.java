@@ -0,0 +1,397 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-feed scheduling (feeds.perFeedScheduling=true). Keeps the next due time of every feed in a priority queue
+ * and sleeps until the earliest one, so each feed is refreshed when its own TTL expires - independent of the
+ * other feeds of its group.
+ * <p>
+ * Due feeds are spread to avoid bursts, e.g. after startup or at the daily start time: every feed gets a
+ * deterministic jitter of up to feeds.refreshJitterRatio of its interval, and the downloads are paced by host and
+ * rate like those of the group refresh (see FeedsRefreshPacer).
+ */
+@CommonsLog
+public class FeedsDueScheduler {
+
+    public FeedsDueScheduler(FeedsConfigService feedsConfigService, FeedsDownloadService feedsDownloadService, FeedsHttpClient feedsHttpClient, FeedsTimer feedsTimer,
+                             FeedsRefreshGovernor feedsRefreshGovernor, FeedsBackoff feedsBackoff, FeedsRefreshPacer feedsRefreshPacer,
+                             FeedsRefreshThrough feedsRefreshThrough) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsDownloadService = feedsDownloadService;
+        this.feedsHttpClient = feedsHttpClient;
+        this.feedsTimer = feedsTimer;
+        this.feedsRefreshGovernor = feedsRefreshGovernor;
+        this.feedsBackoff = feedsBackoff;
+        this.feedsRefreshPacer = feedsRefreshPacer;
+        this.feedsRefreshThrough = feedsRefreshThrough;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsDownloadService feedsDownloadService;
+    private final FeedsHttpClient feedsHttpClient;
+    private final FeedsTimer feedsTimer;
+    private final FeedsRefreshGovernor feedsRefreshGovernor;
+    private final FeedsBackoff feedsBackoff;
+    private final FeedsRefreshPacer feedsRefreshPacer;
+    private final FeedsRefreshThrough feedsRefreshThrough;
+
+    @Value("${feeds.refreshJitterRatio:0.1}")
+    protected double refreshJitterRatio = 0.1;
+
+    private static final Duration MIN_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration MAX_SLEEP = Duration.ofMinutes(15);
+    private static final Duration PAUSED_SLEEP = Duration.ofMinutes(5);
+
+    // not a monitor: expedite() is called on the request path, possibly by a virtual thread
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final PriorityQueue<DueFeed> dueQueue = new PriorityQueue<>(Comparator.comparing(DueFeed::due));
+    private final Map<String, DueFeed> dueFeedsByKey = new HashMap<>();
+
+    private LocalDateTime rateLimitedUntil = null;
+    private boolean synchronizedWithConfig = false;
+
+    private ScheduledExecutorService executor = null;
+    private ScheduledFuture<?> nextWakeUp = null;
+    private LocalDateTime nextWakeUpTime = null;
+
+    @PostConstruct
+    protected void init() {
+        if(!feedsConfigService.isPerFeedScheduling()){
+            return;
+        }
+        log.info("per-feed scheduling active");
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "feeds-due-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleWakeUp(Duration.ofMinutes(feedsConfigService.getStartupDelayMinutes()).plusSeconds(1));
+        feedsConfigService.addConfigChangeListener(this::configChanged);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        if(executor != null){
+            executor.shutdownNow();
+        }
+    }
+
+    protected void wakeUp() {
+        try {
+            queueLock.lock();
+            try {
+                nextWakeUp = null;
+                nextWakeUpTime = null;
+            } finally {
+                queueLock.unlock();
+            }
+            if(feedsDownloadService.skipFeedRefresh()){
+                scheduleWakeUp(PAUSED_SLEEP);
+                return;
+            }
+            if(!synchronizedWithConfig){
+                synchronizeWithConfig();
+            }
+            refreshDueFeeds();
+            scheduleWakeUp(durationUntilNextDue());
+        } catch (Exception e) {
+            FeedsCache.setExceptionTimestampAndWriteToStorage();
+            log.warn("per-feed scheduler caught exception", e);
+            scheduleWakeUp(PAUSED_SLEEP);
+        }
+    }
+
+    private void refreshDueFeeds() {
+
+        var updatedGroups = new LinkedHashMap<String, FeedsCache.FeedsCacheGroup>();
+        var refreshRun = feedsRefreshGovernor.startRun("per-feed refresh");
+        refreshDueFeeds(refreshRun, new FeedsDownloadService.FetchCycle(), updatedGroups);
+        feedsDownloadService.takeUnwrittenGroups().forEach(groupCache -> updatedGroups.putIfAbsent(groupCache.getGroupId(), groupCache));
+
+        if(!updatedGroups.isEmpty()){
+            log.info("writeToStorage");
+            FeedsCache.getInstance().writeGroupsToStorage(updatedGroups.values());
+        }
+        refreshRun.report();
+    }
+
+    private void refreshDueFeeds(FeedsRefreshGovernor.RefreshRun refreshRun, FeedsDownloadService.FetchCycle fetchCycle,
+                                 Map<String, FeedsCache.FeedsCacheGroup> updatedGroups) {
+        var polledFeeds = pollAllDue(feedsTimer.localDateTimeNow());
+        polledFeeds.sort(Comparator.comparing(DueFeed::expedited).reversed());
+        var dueFeeds = FeedsRefreshPacer.interleaveHosts(polledFeeds, this::lookupUrl);
+        while (!dueFeeds.isEmpty()) {
+            var dueFeed = dueFeeds.poll();
+            var groupConfig = lookupGroupConfig(dueFeed.groupId());
+            var feedConfig = lookupFeedConfig(groupConfig, dueFeed.key());
+            if(feedConfig == null){
+                continue; // removed from config in the meantime
+            }
+            var now = feedsTimer.localDateTimeNow();
+            // an url already fetched in this wake-up is served without a request
+            var fetched = fetchCycle.isFetched(feedConfig.getUrl());
+            var hostWait = fetched ? Duration.ZERO : feedsRefreshPacer.hostWait(feedConfig.getUrl());
+            if(!hostWait.isZero()){
+                enqueue(new DueFeed(dueFeed.groupId(), dueFeed.key(), now.plus(hostWait), dueFeed.expedited()));
+                continue;
+            }
+            if(!refreshRun.fits(dueFeed.key())){
+                // the next wake-up starts a new run at once, with expedited feeds first again
+                enqueue(dueFeed);
+                dueFeeds.forEach(this::enqueue);
+                refreshRun.deferred(dueFeeds.size() + 1);
+                break;
+            }
+            var rateWait = fetched ? Duration.ZERO : feedsRefreshPacer.rateWait();
+            if(!rateWait.isZero()){
+                rateLimitedUntil = now.plus(rateWait);
+                enqueue(dueFeed);
+                dueFeeds.forEach(this::enqueue);
+                log.info("refresh rate limit reached - " + (dueFeeds.size() + 1) + " due feeds deferred");
+                break;
+            }
+            if(!fetched){
+                feedsRefreshPacer.acquire(feedConfig.getUrl());
+            }
+            var feedCacheEntry = feedsDownloadService.refreshSingleFeed(groupConfig, feedConfig, fetchCycle);
+            refreshRun.refreshed(feedConfig.getKey(), now);
+            updatedGroups.put(groupConfig.getGroupId(), FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId()));
+            var interval = refreshInterval(feedCacheEntry);
+            var nextDue = notBeforeBackoff(feedConfig.getKey(), now.plus(interval).plus(jitter(feedConfig.getUrl(), interval)));
+            enqueue(new DueFeed(groupConfig.getGroupId(), feedConfig.getKey(), nextDue));
+            log.info("feed '" + feedConfig.getKey() + "' - next refresh: " +
+                    nextDue.toLocalTime().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_TIME));
+        }
+    }
+
+    /**
+     * Moves a queued feed to the front, e.g. after stale content has been served. Host interval and refresh rate
+     * limit still apply; feeds blocked by url fuse or circuit breaker are left as they are.
+     * <p>
+     * Without per-feed scheduling there is no queue: the group is refreshed at the largest TTL of its members, so
+     * a member with a shorter TTL goes stale in between. Its refresh is started in the background then.
+     */
+    public void expedite(String key) {
+        if(executor == null){
+            feedsRefreshThrough.refreshInBackground(key);
+            return;
+        }
+        queueLock.lock();
+        try {
+            var now = feedsTimer.localDateTimeNow();
+            var dueFeed = dueFeedsByKey.get(key);
+            if(dueFeed == null || dueFeed.expedited() || !dueFeed.due().isAfter(now)){
+                return;
+            }
+            var feedConfig = lookupFeedConfig(lookupGroupConfig(dueFeed.groupId()), key);
+            if(feedConfig == null || !feedsDownloadService.isRefreshPermitted(feedConfig)){
+                return;
+            }
+            log.info("feed '" + key + "' expedited");
+            enqueue(new DueFeed(dueFeed.groupId(), key, now, true));
+        } finally {
+            queueLock.unlock();
+        }
+        scheduleWakeUp(Duration.ZERO);
+    }
+
+    // deterministic per url, so a feed keeps its slot across restarts and feeds sharing an url stay due together
+    private Duration jitter(String url, Duration interval) {
+        var maxJitter = (long) (interval.toMillis() * refreshJitterRatio);
+        if(maxJitter <= 0){
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(Math.floorMod(url.hashCode(), maxJitter));
+    }
+
+    private String lookupUrl(DueFeed dueFeed) {
+        var feedConfig = lookupFeedConfig(lookupGroupConfig(dueFeed.groupId()), dueFeed.key());
+        return feedConfig == null ? null : feedConfig.getUrl();
+    }
+
+    /**
+     * Applies a config reload to the queue: removed feeds are dropped, added ones are due at once - spread at the
+     * refresh rate limit, so a bulk import doesn't make thousands of feeds due at the same moment. Until the first
+     * wake-up has read the whole config, there's nothing to apply.
+     */
+    protected void configChanged(FeedsConfigDiff diff) {
+        queueLock.lock();
+        try {
+            if(!synchronizedWithConfig){
+                return;
+            }
+            for(var change : diff.getRemoved()){
+                var dueFeed = dueFeedsByKey.remove(change.feedConfig().getKey());
+                if(dueFeed != null){
+                    dueQueue.remove(dueFeed);
+                }
+            }
+            var due = feedsTimer.localDateTimeNow();
+            var maxRefreshesPerMinute = feedsRefreshPacer.getMaxRefreshesPerMinute();
+            var stagger = maxRefreshesPerMinute > 0 ? Duration.ofMinutes(1).dividedBy(maxRefreshesPerMinute) : Duration.ZERO;
+            for(var change : diff.getAdded()){
+                var key = change.feedConfig().getKey();
+                enqueue(new DueFeed(change.group().getGroupId(), key, notBeforeBackoff(key, due)));
+                due = due.plus(stagger);
+            }
+        } finally {
+            queueLock.unlock();
+        }
+        if(!diff.getAdded().isEmpty()){
+            scheduleWakeUp(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Adds all configured feeds at the first wake-up (due at once, or when their cached content expires) and removes
+     * cached feeds not configured anymore. Later changes are applied by their config diff.
+     */
+    private void synchronizeWithConfig() {
+        queueLock.lock();
+        try {
+            var configuredKeys = new HashSet<String>();
+            for(var groupConfig : feedsConfigService.getFeedsGroups()){
+                var groupCache = FeedsCache.getInstance().defineGroup(groupConfig.getGroupId());
+                var groupKeys = new HashSet<String>();
+                for(var feedConfig : groupConfig.getGroupFeeds()){
+                    groupKeys.add(feedConfig.getKey());
+                    if(!dueFeedsByKey.containsKey(feedConfig.getKey())){
+                        var feedCacheEntry = groupCache.getGroupFeeds().get(feedConfig.getKey());
+                        var due = feedsTimer.localDateTimeNow();
+                        if(feedCacheEntry != null){
+                            var interval = refreshInterval(feedCacheEntry);
+                            due = feedCacheEntry.getLastRefresh().plus(interval).plus(jitter(feedConfig.getUrl(), interval));
+                        }
+                        enqueue(new DueFeed(groupConfig.getGroupId(), feedConfig.getKey(), notBeforeBackoff(feedConfig.getKey(), due)));
+                    }
+                }
+                FeedsCache.getInstance().retainGroupFeeds(groupCache, groupKeys);
+                configuredKeys.addAll(groupKeys);
+            }
+
+            dueFeedsByKey.keySet().retainAll(configuredKeys);
+            dueQueue.removeIf(dueFeed -> !configuredKeys.contains(dueFeed.key()));
+            synchronizedWithConfig = true;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private LocalDateTime notBeforeBackoff(String key, LocalDateTime due) {
+        return feedsBackoff.retryNotBefore(key).filter(due::isBefore).orElse(due);
+    }
+
+    private Duration refreshInterval(FeedsCache.FeedCacheEntry feedCacheEntry) {
+        var interval = feedCacheEntry.getTtl().getTtl();
+        // the url fuse of the http client would reject any earlier call
+        if(interval.compareTo(feedsHttpClient.getDownloadUrlFuseDuration()) < 0){
+            interval = feedsHttpClient.getDownloadUrlFuseDuration();
+        }
+        return interval.compareTo(MIN_INTERVAL) < 0 ? MIN_INTERVAL : interval;
+    }
+
+    private void enqueue(DueFeed dueFeed) {
+        queueLock.lock();
+        try {
+            var existing = dueFeedsByKey.put(dueFeed.key(), dueFeed);
+            if(existing != null){
+                dueQueue.remove(existing);
+            }
+            dueQueue.add(dueFeed);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private List<DueFeed> pollAllDue(LocalDateTime now) {
+        queueLock.lock();
+        try {
+            var dueFeeds = new LinkedList<DueFeed>();
+            while (!dueQueue.isEmpty() && !dueQueue.peek().due().isAfter(now)) {
+                var head = dueQueue.poll();
+                dueFeedsByKey.remove(head.key());
+                dueFeeds.add(head);
+            }
+            return dueFeeds;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private Duration durationUntilNextDue() {
+        queueLock.lock();
+        try {
+            var head = dueQueue.peek();
+            if(head == null){
+                return MAX_SLEEP;
+            }
+            var wakeUpTime = head.due();
+            if(rateLimitedUntil != null && rateLimitedUntil.isAfter(wakeUpTime)){
+                wakeUpTime = rateLimitedUntil;
+            }
+            var duration = Duration.between(feedsTimer.localDateTimeNow(), wakeUpTime);
+            if(duration.isNegative()){
+                return Duration.ZERO;
+            }
+            return duration.compareTo(MAX_SLEEP) > 0 ? MAX_SLEEP : duration;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    protected void scheduleWakeUp(Duration delay) {
+        queueLock.lock();
+        try {
+            if(executor == null || executor.isShutdown()){
+                return;
+            }
+            var wakeUpTime = feedsTimer.localDateTimeNow().plus(delay);
+            if(nextWakeUp != null && !nextWakeUpTime.isAfter(wakeUpTime)){
+                return; // already scheduled earlier
+            }
+            if(nextWakeUp != null){
+                nextWakeUp.cancel(false);
+            }
+            nextWakeUpTime = wakeUpTime;
+            nextWakeUp = executor.schedule(this::wakeUp, delay.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private FeedsConfig.FeedsGroup lookupGroupConfig(String groupId) {
+        return feedsConfigService.getFeedsConfigIndex().lookupGroup(groupId);
+    }
+
+    private FeedsConfig.FeedConfig lookupFeedConfig(FeedsConfig.FeedsGroup groupConfig, String key) {
+        var indexedFeed = feedsConfigService.getFeedsConfigIndex().lookupFeed(key);
+        if(groupConfig == null || indexedFeed == null || !indexedFeed.group().getGroupId().equals(groupConfig.getGroupId())){
+            return null;
+        }
+        return indexedFeed.feedConfig();
+    }
+
+    private record DueFeed(String groupId, String key, LocalDateTime due, boolean expedited) {
+        DueFeed(String groupId, String key, LocalDateTime due) {
+            this(groupId, key, due, false);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigIndex;
+import de.fimatas.feeds.model.FeedsItemIndex;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.apachecommons.CommonsLog;
+import org.jdom2.output.XMLOutputter;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * One merged RSS feed per group (GET /api/groups/{groupId}), with the newest items of all its feeds by pubDate.
+ * Each group keeps the sorted items of its feeds and the merged result, deflated as well as uncompressed. A
+ * requested group is merged again when one of its feeds is committed: only the changed feed is re-read, then the
+ * sorted lists are merged (k-way, up to feeds.groupAggregateMaxItems). Requests return the last merge; they only
+ * merge themselves for the first request of a group, or after the config or the cache group was replaced without
+ * a commit, e.g. by a reload from the storage.
+ */
+@CommonsLog
+public class FeedsGroupAggregator {
+
+    public FeedsGroupAggregator(FeedsConfigService feedsConfigService, FeedsDownloadService feedsDownloadService) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsDownloadService = feedsDownloadService;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsDownloadService feedsDownloadService;
+
+    @Value("${feeds.groupAggregateMaxItems:100}")
+    protected int groupAggregateMaxItems = 100;
+
+    private static final Pattern NAMESPACE_DECLARATION = Pattern.compile("xmlns:[\\w.-]+=\"[^\"]*\"");
+    private static final Comparator<FeedsItemIndex.IndexedItem> NEWEST_FIRST =
+            Comparator.comparing(FeedsItemIndex.IndexedItem::published, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final Map<String, GroupAggregate> aggregates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void init() {
+        feedsDownloadService.addCommitListener(this::committed);
+    }
+
+    /**
+     * The merged feed of the group, null for an unknown group.
+     */
+    public Aggregate lookupAggregate(String groupId) {
+        var configIndex = feedsConfigService.getFeedsConfigIndex();
+        var groupConfig = configIndex.lookupGroup(groupId);
+        if(groupConfig == null){
+            aggregates.remove(groupId);
+            return null;
+        }
+        var groupAggregate = aggregates.computeIfAbsent(groupId, GroupAggregate::new);
+        var precomputed = groupAggregate.lookup(configIndex, lookupGroupFeeds(groupId));
+        return precomputed != null ? precomputed : merge(groupAggregate, groupConfig, configIndex);
+    }
+
+    // only groups requested before are merged ahead, on the refreshing thread
+    protected void committed(FeedsDownloadService.FeedCommit commit) {
+        var groupAggregate = aggregates.get(commit.groupId());
+        if(groupAggregate == null){
+            return;
+        }
+        var configIndex = feedsConfigService.getFeedsConfigIndex();
+        var groupConfig = configIndex.lookupGroup(commit.groupId());
+        if(groupConfig != null){
+            merge(groupAggregate, groupConfig, configIndex);
+        }
+    }
+
+    private Aggregate merge(GroupAggregate groupAggregate, FeedsConfig.FeedsGroup groupConfig, FeedsConfigIndex configIndex) {
+        // read before the members: a commit in between leaves a stale version, so the next request merges again
+        var groupFeeds = lookupGroupFeeds(groupConfig.getGroupId());
+        var keys = groupConfig.getGroupFeeds().stream().map(FeedsConfig.FeedConfig::getKey).toList();
+        return groupAggregate.update(keys, key -> {
+            var feedCacheEntry = FeedsCache.getInstance().lookupFeed(key);
+            return feedCacheEntry == null || !feedCacheEntry.hasActualContent() ? null : feedCacheEntry;
+        }, groupAggregateMaxItems, configIndex.getConfig().getExternalURL(), configIndex, groupFeeds);
+    }
+
+    // replaced on every change of the cache group (copy on write), so it identifies the cached version
+    private static Map<String, FeedsCache.FeedCacheEntry> lookupGroupFeeds(String groupId) {
+        var groupCache = FeedsCache.getInstance().lookupGroup(groupId);
+        return groupCache == null ? null : groupCache.getGroupFeeds();
+    }
+
+    protected static class GroupAggregate {
+
+        GroupAggregate(String groupId) {
+            this.groupId = groupId;
+        }
+
+        private final String groupId;
+        // not a monitor, it's called on the request path
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Member> members = new LinkedHashMap<>();
+        private volatile Aggregate merged = null;
+        // config index and cache group feeds the last update was read from, both compared by identity
+        private volatile Versions versions = null;
+
+        /**
+         * The last merge if it was read from these versions, otherwise null.
+         */
+        Aggregate lookup(FeedsConfigIndex configIndex, Map<String, FeedsCache.FeedCacheEntry> groupFeeds) {
+            var current = versions;
+            return current != null && current.configIndex() == configIndex && current.groupFeeds() == groupFeeds ? current.merged() : null;
+        }
+
+        Aggregate update(List<String> keys, Function<String, FeedsCache.FeedCacheEntry> lookup, int maxItems, String externalURL,
+                         FeedsConfigIndex configIndex, Map<String, FeedsCache.FeedCacheEntry> groupFeeds) {
+            lock.lock();
+            try {
+                var changed = members.keySet().retainAll(new HashSet<>(keys)) || merged == null;
+                for(var key : keys){
+                    var feedCacheEntry = lookup.apply(key);
+                    var source = feedCacheEntry == null ? null : feedCacheEntry.getContentDeflated();
+                    var member = members.get(key);
+                    if(member != null && member.source() == source){
+                        continue;
+                    }
+                    changed = true;
+                    if(source == null){
+                        members.remove(key);
+                    }else{
+                        members.put(key, Member.of(feedCacheEntry, maxItems));
+                    }
+                }
+                if(changed){
+                    merged = merge(maxItems, externalURL);
+                }
+                versions = new Versions(configIndex, groupFeeds, merged);
+                return merged;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Aggregate merge(int maxItems, String externalURL) {
+
+            // k-way merge: a heap of one cursor per feed, each pointing to that feed's newest remaining item
+            var cursors = new PriorityQueue<Cursor>(Comparator.comparing(Cursor::head, NEWEST_FIRST));
+            var namespaces = new LinkedHashMap<String, String>();
+            for(var member : members.values()){
+                if(!member.items().isEmpty()){
+                    cursors.add(new Cursor(member.items(), 0));
+                }
+                member.namespaces().forEach(namespaces::putIfAbsent);
+            }
+            var items = new ArrayList<String>(maxItems);
+            while (!cursors.isEmpty() && items.size() < maxItems) {
+                var cursor = cursors.poll();
+                items.add(cursor.head().xml());
+                if(cursor.position() + 1 < cursor.items().size()){
+                    cursors.add(new Cursor(cursor.items(), cursor.position() + 1));
+                }
+            }
+
+            var now = Instant.now();
+            var content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rss version=\"2.0\"");
+            namespaces.values().forEach(declaration -> content.append(' ').append(declaration));
+            content.append(">\n  <channel>\n");
+            content.append("    <title>").append(escape(groupId)).append("</title>\n");
+            content.append("    <link>").append(escape(Objects.toString(externalURL, ""))).append("</link>\n");
+            content.append("    <description>").append(escape("Merged items of the feeds of group '" + groupId + "'")).append("</description>\n");
+            items.forEach(item -> content.append("    ").append(item).append('\n'));
+            content.append("  </channel>\n</rss>\n");
+
+            var feedCacheEntry = new FeedsCache.FeedCacheEntry();
+            feedCacheEntry.setKey(groupId);
+            feedCacheEntry.setContent(content.toString());
+            feedCacheEntry.setLastRefresh(LocalDateTime.now());
+            feedCacheEntry.setHeaderLastModified(DateTimeFormatter.RFC_1123_DATE_TIME.format(now.atZone(ZoneOffset.UTC)));
+            feedCacheEntry.setHeaderContentType("application/rss+xml;charset=UTF-8");
+            log.debug("group aggregate '" + groupId + "' merged: " + items.size() + " items of " + members.size() + " feeds");
+            return new Aggregate(feedCacheEntry, content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static String escape(String text) {
+            return new XMLOutputter().escapeElementEntities(text);
+        }
+    }
+
+    /**
+     * The items of one feed, newest first and already capped, and the namespaces its items may use.
+     */
+    protected record Member(byte[] source, List<FeedsItemIndex.IndexedItem> items, Map<String, String> namespaces) {
+
+        static Member of(FeedsCache.FeedCacheEntry feedCacheEntry, int maxItems) {
+            var content = feedCacheEntry.getContent();
+            var items = new ArrayList<>(feedCacheEntry.getItemIndex().extractItems(content));
+            items.sort(NEWEST_FIRST);
+            var namespaces = new LinkedHashMap<String, String>();
+            var rootEnd = content.indexOf("<channel");
+            var matcher = NAMESPACE_DECLARATION.matcher(rootEnd < 0 ? "" : content.substring(0, rootEnd));
+            while (matcher.find()) {
+                var declaration = matcher.group();
+                namespaces.putIfAbsent(declaration.substring(0, declaration.indexOf('=')), declaration);
+            }
+            return new Member(feedCacheEntry.getContentDeflated(), List.copyOf(items.subList(0, Math.min(maxItems, items.size()))), namespaces);
+        }
+    }
+
+    /**
+     * The merged feed, its content also kept uncompressed for clients that don't accept deflate.
+     */
+    public record Aggregate(FeedsCache.FeedCacheEntry feedCacheEntry, byte[] content) {
+    }
+
+    private record Versions(FeedsConfigIndex configIndex, Map<String, FeedsCache.FeedCacheEntry> groupFeeds, Aggregate merged) {
+    }
+
+    private record Cursor(List<FeedsItemIndex.IndexedItem> items, int position) {
+        FeedsItemIndex.IndexedItem head() {
+            return items.get(position);
+        }
+    }
+}
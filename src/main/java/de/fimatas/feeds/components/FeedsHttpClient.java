@@ -1,30 +1,41 @@
 package de.fimatas.feeds.components;
 
+import de.fimatas.feeds.model.FeedsDownloadException;
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
 import de.fimatas.feeds.model.FeedsHttpClientResponse;
 import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.extern.apachecommons.CommonsLog;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @CommonsLog
 public class FeedsHttpClient {
 
-    private final Map<String, LocalDateTime> lastUrlRequestCall = new HashMap<>();
+    private final Map<String, LocalDateTime> lastUrlRequestCall = new ConcurrentHashMap<>();
 
     @Value("${feeds.downloadTimeoutSeconds}")
     private int downloadTimeoutSeconds;
 
+    @Getter
     @Value("${feeds.downloadUrlFuseDuration}")
     protected Duration downloadUrlFuseDuration;
 
@@ -34,15 +45,18 @@ public class FeedsHttpClient {
     }
 
     public FeedsHttpClientResponse getFeeds(String url) {
-        if(lastUrlRequestCall.containsKey(url)){
-            if(lastUrlRequestCall.get(url).plus(downloadUrlFuseDuration).isAfter(LocalDateTime.now())){
-                throw new IllegalStateException("too many calls to url: " + url);
-            }
+        if(isUrlFused(url)){
+            throw new FeedsRefreshThrottledException("too many calls to url: " + url);
         }
         lastUrlRequestCall.put(url, LocalDateTime.now());
         return doRequest(url);
     }
 
+    public boolean isUrlFused(String url) {
+        var lastCall = lastUrlRequestCall.get(url);
+        return lastCall != null && lastCall.plus(downloadUrlFuseDuration).isAfter(LocalDateTime.now());
+    }
+
     private FeedsHttpClientResponse doRequest(String url) {
 
         RequestConfig requestConfig = RequestConfig.custom()
@@ -58,8 +72,10 @@ public class FeedsHttpClient {
 
             return client.execute(request, response -> {
                 int statusCode = response.getCode();
-                if (statusCode != org.apache.hc.core5.http.HttpStatus.SC_OK) {
-                    throw new RuntimeException("HTTP Status Code: " + statusCode);
+                if (statusCode != HttpStatus.SC_OK) {
+                    var retryAfterHeader = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+                    var retryAfter = retryAfterHeader == null ? null : parseRetryAfter(retryAfterHeader.getValue());
+                    throw new FeedsDownloadException("HTTP Status Code: " + statusCode, classifyStatus(statusCode, retryAfter), statusCode, retryAfter);
                 }
                 var headers = new HashMap<String, String>();
                 for (var header : response.getHeaders()) {
@@ -69,7 +85,44 @@ public class FeedsHttpClient {
             });
 
         } catch (IOException e) {
-            throw new RuntimeException("error getting feed: " + e.getMessage(), e);
+            throw new FeedsDownloadException("error getting feed: " + e.getMessage(), classifyIOException(e), e);
+        }
+    }
+
+    private static FeedsDownloadException.ErrorClass classifyStatus(int statusCode, Duration retryAfter) {
+        if (statusCode == HttpStatus.SC_TOO_MANY_REQUESTS || (statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE && retryAfter != null)) {
+            return FeedsDownloadException.ErrorClass.RATE_LIMITED;
+        }
+        if (statusCode >= 500) {
+            return FeedsDownloadException.ErrorClass.SERVER_ERROR;
+        }
+        if (statusCode >= 400) {
+            return FeedsDownloadException.ErrorClass.CLIENT_ERROR;
+        }
+        return FeedsDownloadException.ErrorClass.OTHER;
+    }
+
+    private static FeedsDownloadException.ErrorClass classifyIOException(IOException e) {
+        if (e instanceof UnknownHostException) {
+            return FeedsDownloadException.ErrorClass.DNS;
+        }
+        // socket and connect timeouts of the http client are InterruptedIOExceptions
+        if (e instanceof InterruptedIOException) {
+            return FeedsDownloadException.ErrorClass.TIMEOUT;
+        }
+        return FeedsDownloadException.ErrorClass.CONNECTION;
+    }
+
+    private static Duration parseRetryAfter(String retryAfter) {
+        try {
+            if (retryAfter.trim().matches("\\d+")) {
+                return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+            }
+            var duration = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+            return duration.isNegative() ? null : duration;
+        } catch (Exception e) {
+            log.warn("Could not parse retry-after: " + retryAfter);
+            return null;
         }
     }
 }
@@ -0,0 +1,132 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsItemIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Server-sent events of newly accepted items (feeds.itemEvents=true), per feed or per group. When a refresh of this
+ * instance commits a feed, every item that wasn't in its previous content is pushed to the subscribers - items are
+ * told apart by guid, else by link, so an edited item isn't new. The first content of a feed is its baseline.
+ * Each subscriber has a buffer of feeds.itemEventsBuffer events, a slow one loses its oldest events instead of
+ * holding up the others.
+ */
+@CommonsLog
+public class FeedsItemEvents {
+
+    public FeedsItemEvents(FeedsConfigService feedsConfigService, FeedsDownloadService feedsDownloadService) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsDownloadService = feedsDownloadService;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsDownloadService feedsDownloadService;
+
+    @Getter
+    @Value("${feeds.itemEvents:false}")
+    protected boolean itemEvents;
+
+    @Value("${feeds.itemEventsBuffer:256}")
+    protected int itemEventsBuffer = 256;
+
+    // keeps idle connections open through proxies
+    private static final Duration HEARTBEAT = Duration.ofSeconds(30);
+
+    private final Sinks.Many<ItemEvent> sink = Sinks.many().multicast().directBestEffort();
+    // the sink must not be called concurrently, refreshes of different feeds run in parallel
+    private final ReentrantLock emitLock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @PostConstruct
+    protected void init() {
+        if(!itemEvents){
+            return;
+        }
+        log.info("item events active - buffer per subscriber: " + itemEventsBuffer);
+        feedsDownloadService.addCommitListener(this::committed);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        emitLock.lock();
+        try {
+            sink.tryEmitComplete();
+        } finally {
+            emitLock.unlock();
+        }
+    }
+
+    /**
+     * Events of one feed, null if the feed is unknown or events are off.
+     */
+    public Flux<ServerSentEvent<ItemEvent>> subscribeFeed(String key) {
+        if(!itemEvents || feedsConfigService.getFeedsConfigIndex().lookupFeed(key) == null){
+            return null;
+        }
+        return subscribe(event -> event.feed().equals(key));
+    }
+
+    /**
+     * Events of all feeds of a group, null if the group is unknown or events are off.
+     */
+    public Flux<ServerSentEvent<ItemEvent>> subscribeGroup(String groupId) {
+        if(!itemEvents || feedsConfigService.getFeedsConfigIndex().lookupGroup(groupId) == null){
+            return null;
+        }
+        return subscribe(event -> event.group().equals(groupId));
+    }
+
+    private Flux<ServerSentEvent<ItemEvent>> subscribe(Predicate<ItemEvent> filter) {
+        var items = sink.asFlux().filter(filter)
+                .map(event -> ServerSentEvent.builder(event).id(Long.toString(event.id())).event("item").build());
+        var heartbeats = Flux.interval(HEARTBEAT).map(tick -> ServerSentEvent.<ItemEvent>builder().comment("heartbeat").build());
+        // the buffer sits after the merge, so every subscriber has its own
+        return Flux.merge(items, heartbeats).onBackpressureBuffer(itemEventsBuffer,
+                dropped -> log.debug("item event dropped for a slow subscriber"), BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    protected void committed(FeedsDownloadService.FeedCommit commit) {
+        var previousEntry = commit.previousEntry();
+        var committedEntry = commit.committedEntry();
+        if(sink.currentSubscriberCount() == 0 || previousEntry == null || previousEntry.getContentDeflated() == null
+                || previousEntry.getContentDeflated() == committedEntry.getContentDeflated()){
+            return;
+        }
+        var previousItems = new HashSet<String>();
+        previousEntry.getItemIndex().extractItems(previousEntry.getContent()).forEach(item -> previousItems.add(item.identity()));
+        var newItems = committedEntry.getItemIndex().extractItems(committedEntry.getContent()).stream()
+                .filter(item -> !previousItems.contains(item.identity())).toList();
+        if(newItems.isEmpty()){
+            return;
+        }
+        emitLock.lock();
+        try {
+            for(FeedsItemIndex.IndexedItem item : newItems){
+                sink.tryEmitNext(new ItemEvent(sequence.incrementAndGet(), commit.groupId(), committedEntry.getKey(),
+                        item.published() == null ? null : item.published().toString(), item.xml()));
+            }
+        } finally {
+            emitLock.unlock();
+        }
+        log.debug("feed '" + committedEntry.getKey() + "' - item events: " + newItems.size());
+    }
+
+    /**
+     * Data of an event: the item as it is served in the feed, published as ISO instant (null if unknown).
+     */
+    public record ItemEvent(long id, String group, String feed, String published, String item) {
+    }
+}
@@ -0,0 +1,101 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Elects one download leader among all instances sharing the cache directory, using an exclusive lock on a
+ * lock file. The operating system releases the lock when the leader process dies, so a follower takes over
+ * with its next heartbeat. Followers don't download, they reload the cache written by the leader.
+ */
+@CommonsLog
+public class FeedsLeaderElection {
+
+    @Value("${feeds.leaderElection:false}")
+    protected boolean leaderElection;
+
+    private FileChannel lockChannel = null;
+    private FileLock lock = null;
+
+    @PostConstruct
+    private void init() {
+        log.info("leaderElection=" + leaderElection);
+        if(leaderElection){
+            log.info("leader: " + isLeader());
+        }
+    }
+
+    public synchronized boolean isLeader() {
+        if(!leaderElection){
+            return true;
+        }
+        if(lock != null && lock.isValid()){
+            return true;
+        }
+        return tryAcquireLock();
+    }
+
+    @Scheduled(initialDelay = 10000, fixedDelayString = "${feeds.leaderElectionHeartbeat:PT10S}")
+    public void heartbeat() {
+        if(!leaderElection){
+            return;
+        }
+        var wasLeader = isLockHeld();
+        try {
+            if(isLeader()){
+                if(!wasLeader){
+                    log.info("became leader");
+                    FeedsCache.getInstance().reloadFromStorage();
+                }
+            }else{
+                FeedsCache.getInstance().reloadFromStorage();
+            }
+        } catch (Exception e) {
+            log.warn("leader election heartbeat caught exception: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        try {
+            if(lock != null && lock.isValid()){
+                lock.release();
+            }
+            if(lockChannel != null){
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("could not release leader lock: " + e.getMessage());
+        }
+        lock = null;
+        lockChannel = null;
+    }
+
+    private synchronized boolean isLockHeld() {
+        return lock != null && lock.isValid();
+    }
+
+    private boolean tryAcquireLock() {
+        try {
+            if(lockChannel == null || !lockChannel.isOpen()){
+                lockChannel = FileChannel.open(FeedsCache.lookupCacheFile("lock").toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            lock = lockChannel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            log.debug("could not acquire leader lock: " + e.getMessage());
+            lock = null;
+        }
+        return lock != null;
+    }
+}
@@ -0,0 +1,205 @@
+package de.fimatas.feeds.components;
+
+import com.rometools.rome.feed.rss.Item;
+import de.fimatas.feeds.model.FeedsConfig;
+import lombok.extern.apachecommons.CommonsLog;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Near-duplicate suppression (feeds.nearDuplicateSuppression=true): drops items that another feed of the same group
+ * has already emitted within feeds.nearDuplicateWindow, e.g. a newswire story with slightly different wording.
+ * <p>
+ * Items are compared by a 64 bit SimHash of their normalized title and description; near-duplicates differ in at
+ * most MAX_DISTANCE bits. The fingerprints are kept in memory, bounded by feeds.nearDuplicateIndexSize, and bucketed
+ * by 16 bit bands - two hashes within the distance share at least one band, so only a bucket is compared.
+ * The feed that emitted an item first keeps it as long as it emits it again.
+ */
+@CommonsLog
+public class FeedsNearDuplicates {
+
+    public FeedsNearDuplicates(FeedsConfigService feedsConfigService, FeedsTimer feedsTimer) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsTimer feedsTimer;
+
+    @Value("${feeds.nearDuplicateSuppression:false}")
+    protected boolean nearDuplicateSuppression;
+
+    @Value("${feeds.nearDuplicateWindow:PT48H}")
+    protected Duration nearDuplicateWindow = Duration.ofHours(48);
+
+    @Value("${feeds.nearDuplicateIndexSize:20000}")
+    protected int nearDuplicateIndexSize = 20000;
+
+    protected static final int MAX_DISTANCE = 3;
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    // shorter texts collide too easily, they are never suppressed
+    private static final int MIN_TOKENS = 4;
+
+    private static final Pattern MARKUP = Pattern.compile("<[^>]*>|&[#\\w]+;");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // not a monitor, the feeds are processed by parallel downloads
+    private final ReentrantLock lock = new ReentrantLock();
+    // in order of the last emission, so the head is the first to expire or to be evicted
+    private final LinkedHashMap<Fingerprint, LocalDateTime> fingerprints = new LinkedHashMap<>();
+    private final Map<Band, Set<Fingerprint>> buckets = new HashMap<>();
+
+    public List<Item> suppress(FeedsConfig.FeedConfig feedConfig, List<Item> items) {
+
+        if(!nearDuplicateSuppression){
+            return items;
+        }
+        var indexedFeed = feedsConfigService.getFeedsConfigIndex().lookupFeed(feedConfig.getKey());
+        if(indexedFeed == null){
+            return items;
+        }
+        var groupId = indexedFeed.group().getGroupId();
+        var now = feedsTimer.localDateTimeNow();
+
+        var emitted = new ArrayList<Item>(items.size());
+        lock.lock();
+        try {
+            evictExpired(now);
+            for(Item item : items){
+                var hash = simHash(item);
+                if(hash == null){
+                    emitted.add(item);
+                    continue;
+                }
+                var duplicateOf = lookupEmittedByOtherFeed(groupId, feedConfig.getKey(), hash);
+                if(duplicateOf != null){
+                    log.debug("near-duplicate suppressed in '" + feedConfig.getKey() + "' (emitted by '" + duplicateOf + "'): " + item.getTitle());
+                    continue;
+                }
+                record(new Fingerprint(groupId, feedConfig.getKey(), hash), now);
+                emitted.add(item);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(emitted.size() < items.size()){
+            log.info("feed '" + feedConfig.getKey() + "' - near-duplicates suppressed: " + (items.size() - emitted.size()));
+        }
+        return emitted;
+    }
+
+    private String lookupEmittedByOtherFeed(String groupId, String feedKey, long hash) {
+        for(int band = 0; band < BANDS; band++){
+            for(var fingerprint : buckets.getOrDefault(new Band(groupId, band, band(hash, band)), Set.of())){
+                if(!fingerprint.feedKey().equals(feedKey) && Long.bitCount(fingerprint.hash() ^ hash) <= MAX_DISTANCE){
+                    return fingerprint.feedKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void record(Fingerprint fingerprint, LocalDateTime now) {
+        // re-inserted to move it to the tail
+        if(fingerprints.remove(fingerprint) == null){
+            for(int band = 0; band < BANDS; band++){
+                buckets.computeIfAbsent(new Band(fingerprint.groupId(), band, band(fingerprint.hash(), band)), b -> new HashSet<>()).add(fingerprint);
+            }
+        }
+        fingerprints.put(fingerprint, now);
+        while (fingerprints.size() > nearDuplicateIndexSize) {
+            remove(fingerprints.keySet().iterator().next());
+        }
+    }
+
+    private void evictExpired(LocalDateTime now) {
+        var oldest = now.minus(nearDuplicateWindow);
+        var iterator = fingerprints.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if(entry.getValue().isAfter(oldest)){
+                break;
+            }
+            removeFromBuckets(entry.getKey());
+            iterator.remove();
+        }
+    }
+
+    private void remove(Fingerprint fingerprint) {
+        fingerprints.remove(fingerprint);
+        removeFromBuckets(fingerprint);
+    }
+
+    private void removeFromBuckets(Fingerprint fingerprint) {
+        for(int band = 0; band < BANDS; band++){
+            var key = new Band(fingerprint.groupId(), band, band(fingerprint.hash(), band));
+            var bucket = buckets.get(key);
+            if(bucket != null && bucket.remove(fingerprint) && bucket.isEmpty()){
+                buckets.remove(key);
+            }
+        }
+    }
+
+    protected int size() {
+        return fingerprints.size();
+    }
+
+    private static int band(long hash, int band) {
+        return (int) ((hash >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+    }
+
+    /**
+     * SimHash of the words of title and description, null if there are too few words to compare.
+     */
+    protected static Long simHash(Item item) {
+        var text = StringUtils.trimToEmpty(item.getTitle()) + " " + (item.getDescription() == null ? "" : StringUtils.trimToEmpty(item.getDescription().getValue()));
+        var tokens = NON_WORD.split(MARKUP.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT));
+        var weights = new int[64];
+        int count = 0;
+        for(String token : tokens){
+            if(token.length() < 2){
+                continue;
+            }
+            count++;
+            var hash = hash(token);
+            for(int bit = 0; bit < 64; bit++){
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        if(count < MIN_TOKENS){
+            return null;
+        }
+        long simHash = 0;
+        for(int bit = 0; bit < 64; bit++){
+            if(weights[bit] > 0){
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    // FNV-1a, finished by the splitmix64 mixer for well distributed bits
+    private static long hash(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < token.length(); i++){
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private record Fingerprint(String groupId, String feedKey, long hash) {
+    }
+
+    private record Band(String groupId, int band, int value) {
+    }
+}
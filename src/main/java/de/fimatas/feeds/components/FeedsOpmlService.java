@@ -0,0 +1,168 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.util.FeedsOpml;
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Bulk import of OPML subscription lists: an 'import.opml' placed next to feeds.json is validated, merged into
+ * feeds.json and renamed afterwards. Feeds with an invalid or already configured url are skipped. The added feeds
+ * reach the schedulers through the regular config reload, which spreads their first downloads.
+ */
+@CommonsLog
+public class FeedsOpmlService {
+
+    public FeedsOpmlService(FeedsConfigService feedsConfigService, FeedsLeaderElection feedsLeaderElection) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsLeaderElection = feedsLeaderElection;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsLeaderElection feedsLeaderElection;
+
+    @Value("${feeds.opmlGroupDefaultDurationMinutes:60}")
+    protected long opmlGroupDefaultDurationMinutes = 60;
+
+    protected static final String IMPORT_FILE = "import.opml";
+    protected static final String DEFAULT_GROUP = "imported";
+    private static final int MAX_KEY_LENGTH = 60;
+
+    @Scheduled(initialDelay = 20000, fixedDelay = 15000)
+    public void importIfPresent() {
+        if(feedsConfigService.isUseTestConfig() || !feedsLeaderElection.isLeader()){
+            return;
+        }
+        var importFile = new File(feedsConfigService.lookupConfigDirectory(), IMPORT_FILE);
+        if(!importFile.exists()){
+            return;
+        }
+        var suffix = ".done";
+        try (var inputStream = new FileInputStream(importFile)) {
+            log.info("opml import: " + importOpml(inputStream));
+        } catch (Exception e) {
+            log.warn("opml import failed: " + e.getMessage());
+            suffix = ".failed";
+        }
+        var timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        if(!importFile.renameTo(new File(importFile.getParentFile(), "import-" + timestamp + ".opml" + suffix))){
+            log.warn("opml import file could not be renamed");
+        }
+    }
+
+    public ImportResult importOpml(InputStream inputStream) throws Exception {
+        var outlines = FeedsOpml.parse(inputStream);
+        var result = new ImportResult();
+        feedsConfigService.updateConfigFile(feedsConfig -> merge(feedsConfig, outlines, result));
+        return result;
+    }
+
+    protected void merge(FeedsConfig feedsConfig, List<FeedsOpml.Outline> outlines, ImportResult result) {
+        var keys = new HashSet<String>();
+        var urls = new HashSet<String>();
+        var groups = new LinkedHashMap<String, FeedsConfig.FeedsGroup>();
+        for(var group : feedsConfig.getGroups()){
+            groups.putIfAbsent(group.getGroupId(), group);
+            group.getGroupFeeds().forEach(feedConfig -> {
+                keys.add(feedConfig.getKey());
+                urls.add(normalizeUrl(feedConfig.getUrl()));
+            });
+        }
+        var newGroups = new LinkedList<FeedsConfig.FeedsGroup>();
+        for(var outline : outlines){
+            var uri = parseUrl(outline.xmlUrl());
+            if(uri == null){
+                result.invalid.add(outline.xmlUrl());
+                continue;
+            }
+            if(!urls.add(normalizeUrl(outline.xmlUrl()))){
+                result.duplicates.add(outline.xmlUrl());
+                continue;
+            }
+            var groupId = StringUtils.defaultIfBlank(outline.group(), DEFAULT_GROUP);
+            var group = groups.computeIfAbsent(groupId, id -> {
+                var newGroup = new FeedsConfig.FeedsGroup();
+                newGroup.setGroupId(id);
+                newGroup.setGroupDefaultDurationMinutes(opmlGroupDefaultDurationMinutes);
+                newGroup.setGroupFeeds(new ArrayList<>());
+                newGroups.add(newGroup);
+                return newGroup;
+            });
+            var name = StringUtils.defaultIfBlank(outline.title(), uri.getHost());
+            var feedConfig = new FeedsConfig.FeedConfig();
+            feedConfig.setName(name);
+            feedConfig.setKey(uniqueKey(name, keys));
+            feedConfig.setUrl(outline.xmlUrl());
+            feedConfig.setIncludeRefs(new ArrayList<>());
+            feedConfig.setExcludeRefs(new ArrayList<>());
+            feedConfig.setActive(true);
+            group.getGroupFeeds().add(feedConfig);
+            result.added.add(feedConfig.getKey());
+        }
+        if(!newGroups.isEmpty()){
+            var allGroups = new ArrayList<>(feedsConfig.getGroups());
+            allGroups.addAll(newGroups);
+            feedsConfig.setGroups(allGroups);
+        }
+        result.invalid.forEach(url -> log.warn("opml import - invalid url skipped: " + url));
+    }
+
+    private static URI parseUrl(String url) {
+        try {
+            var uri = new URI(url);
+            var scheme = StringUtils.lowerCase(uri.getScheme());
+            return ("http".equals(scheme) || "https".equals(scheme)) && uri.getHost() != null ? uri : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    // scheme and host are case-insensitive, a trailing slash doesn't make another feed
+    private static String normalizeUrl(String url) {
+        var uri = parseUrl(url);
+        if(uri == null){
+            return StringUtils.trimToEmpty(url);
+        }
+        var normalized = uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getRawAuthority().toLowerCase(Locale.ROOT)
+                + StringUtils.defaultString(uri.getRawPath()) + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        return StringUtils.removeEnd(normalized, "/");
+    }
+
+    private static String uniqueKey(String name, Set<String> keys) {
+        var base = StringUtils.left(StringUtils.stripAccents(name).toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "_").replaceAll("^_+|_+$", ""), MAX_KEY_LENGTH);
+        if(base.isEmpty()){
+            base = "feed";
+        }
+        var key = base;
+        for(int i = 2; keys.contains(key); i++){
+            key = base + "_" + i;
+        }
+        keys.add(key);
+        return key;
+    }
+
+    @Getter
+    public static class ImportResult {
+        private final List<String> added = new LinkedList<>();
+        private final List<String> duplicates = new LinkedList<>();
+        private final List<String> invalid = new LinkedList<>();
+
+        @Override
+        public String toString() {
+            return "added: " + added.size() + ", duplicates: " + duplicates.size() + ", invalid: " + invalid.size();
+        }
+    }
+}
@@ -2,17 +2,15 @@ package de.fimatas.feeds.components;
 
 import com.rometools.rome.feed.rss.Channel;
 import com.rometools.rome.feed.rss.Item;
-import com.rometools.rome.io.WireFeedInput;
 import com.rometools.rome.io.WireFeedOutput;
 import de.fimatas.feeds.model.FeedsConfig;
 import de.fimatas.feeds.model.FeedsHttpClientResponse;
+import de.fimatas.feeds.util.FeedsUtil;
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.xml.sax.InputSource;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,11 +19,13 @@ public class FeedsProcessingService {
     protected static final String THE_ITEMS_OF_THIS_FEED_WERE_FILTERED_BY = "THE ITEMS OF THIS FEED WERE FILTERED BY";
     protected static final String ORIGINAL_DESCRIPTION = "ORIGINAL DESCRIPTION";
 
-    public FeedsProcessingService(FeedsConfigService feedsConfigService) {
+    public FeedsProcessingService(FeedsConfigService feedsConfigService, FeedsNearDuplicates feedsNearDuplicates) {
         this.feedsConfigService = feedsConfigService;
+        this.feedsNearDuplicates = feedsNearDuplicates;
     }
 
     private final FeedsConfigService feedsConfigService;
+    private final FeedsNearDuplicates feedsNearDuplicates;
 
     @Value("${feeds.relevantDescriptionLength}")
     protected int relevantDescriptionLength;
@@ -37,13 +37,11 @@ public class FeedsProcessingService {
             return null;
         }
 
-        Channel channel = (Channel) new WireFeedInput()
-                .build(new InputSource(new ByteArrayInputStream(originalFeed.getBody().getBytes(StandardCharsets.UTF_8))));
+        // the parsed channel is shared by all feeds with the same url, so each one filters its own copy
+        Channel channel = (Channel) FeedsUtil.parseFeed(originalFeed).clone();
+        channel.setDescription(THE_ITEMS_OF_THIS_FEED_WERE_FILTERED_BY + " '" + feedsConfigService.getExternalURL() + "'. " + ORIGINAL_DESCRIPTION + " = '" + channel.getDescription() + "'.");
 
-        var originalDescription = channel.getDescription();
-        channel.setDescription(THE_ITEMS_OF_THIS_FEED_WERE_FILTERED_BY + " '" + feedsConfigService.getExternalURL() + "'. " + ORIGINAL_DESCRIPTION + " = '" + originalDescription + "'.");
-
-        List<Item> filteredEntries = processEntries(channel.getItems(), feedConfig);
+        List<Item> filteredEntries = feedsNearDuplicates.suppress(feedConfig, processEntries(channel.getItems(), feedConfig));
         channel.setItems(filteredEntries);
 
         WireFeedOutput output = new WireFeedOutput();
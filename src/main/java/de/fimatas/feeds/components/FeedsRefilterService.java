@@ -0,0 +1,99 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import de.fimatas.feeds.model.FeedsHttpClientResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies changed include/exclude lists to the cached feeds right after a config reload, based on the retained
+ * raw upstream body and without any download. Only the feeds whose resolved filters changed are processed again;
+ * feeds without a raw body get the new filters with their next refresh.
+ */
+@CommonsLog
+public class FeedsRefilterService {
+
+    public FeedsRefilterService(FeedsConfigService feedsConfigService, FeedsProcessingService feedsProcessingService, FeedsLeaderElection feedsLeaderElection) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsProcessingService = feedsProcessingService;
+        this.feedsLeaderElection = feedsLeaderElection;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsProcessingService feedsProcessingService;
+    private final FeedsLeaderElection feedsLeaderElection;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "feeds-refilter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    protected void init() {
+        feedsConfigService.addConfigChangeListener(this::configChanged);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    protected void configChanged(FeedsConfigDiff diff) {
+        // by group id, hashing the group config would hash all its feeds
+        var affected = new LinkedHashMap<String, List<FeedsConfig.FeedConfig>>();
+        diff.getFiltersChanged().forEach(change -> affected.computeIfAbsent(change.group().getGroupId(), g -> new LinkedList<>()).add(change.feedConfig()));
+        if(!affected.isEmpty()){
+            log.info("filters changed: " + diff.getFiltersChanged().stream().map(change -> change.feedConfig().getKey()).toList());
+            executor.execute(() -> refilter(affected));
+        }
+    }
+
+    protected void refilter(Map<String, List<FeedsConfig.FeedConfig>> affected) {
+        if(!feedsLeaderElection.isLeader() || FeedsCache.getInstance().isNotValid()){
+            return; // followers reload the leader's result
+        }
+        var updatedGroups = new LinkedList<FeedsCache.FeedsCacheGroup>();
+        affected.forEach((groupId, feedConfigs) -> {
+            var groupCache = FeedsCache.getInstance().lookupGroup(groupId);
+            if(groupCache == null){
+                return;
+            }
+            var updated = false;
+            for(var feedConfig : feedConfigs){
+                var entry = groupCache.getGroupFeeds().get(feedConfig.getKey());
+                var rawContent = entry == null ? null : entry.getRawContent();
+                if(rawContent == null){
+                    continue;
+                }
+                try {
+                    var content = feedsProcessingService.processFeed(new FeedsHttpClientResponse(Map.of(), 200, rawContent), feedConfig);
+                    var refiltered = entry.withContent(content);
+                    if(FeedsCache.getInstance().replaceFeed(groupCache, entry, refiltered)){
+                        log.info("refiltered: " + feedConfig.getName());
+                        if(FeedsCache.getInstance().isIncrementalStorage()){
+                            FeedsCache.getInstance().writeFeedToStorage(groupCache, refiltered);
+                        }else{
+                            updated = true;
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("refilter failed: " + feedConfig.getName() + " - " + e.getMessage());
+                }
+            }
+            if(updated){
+                updatedGroups.add(groupCache);
+            }
+        });
+        if(!updatedGroups.isEmpty()){
+            FeedsCache.getInstance().writeGroupsToStorage(updatedGroups);
+        }
+    }
+}
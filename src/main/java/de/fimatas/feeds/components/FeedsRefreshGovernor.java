@@ -0,0 +1,122 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of downloads in flight over all refresh paths and gives every refresh run a time budget
+ * (feeds.refreshRunBudget, disabled with zero). Work that does not fit into a run is deferred to the next one.
+ */
+@CommonsLog
+public class FeedsRefreshGovernor {
+
+    public FeedsRefreshGovernor(FeedsTimer feedsTimer) {
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsTimer feedsTimer;
+
+    @Value("${feeds.refreshRunBudget:PT0S}")
+    protected Duration refreshRunBudget = Duration.ZERO;
+
+    @Value("${feeds.maxConcurrentDownloads:4}")
+    protected int maxConcurrentDownloads = 4;
+
+    private static final Duration MAX_PERMIT_WAIT = Duration.ofMinutes(2);
+
+    private Semaphore downloadPermits = new Semaphore(maxConcurrentDownloads, true);
+    private final AtomicInteger downloadsInFlight = new AtomicInteger();
+    private final AtomicInteger peakDownloadsInFlight = new AtomicInteger();
+
+    private final Map<String, Duration> lastDurations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void init() {
+        downloadPermits = new Semaphore(maxConcurrentDownloads, true);
+        log.info("maxConcurrentDownloads=" + maxConcurrentDownloads + ", refreshRunBudget Seconds: " + refreshRunBudget.toSeconds());
+    }
+
+    public boolean isBudgeted() {
+        return !refreshRunBudget.isZero();
+    }
+
+    public <T> T download(Supplier<T> download) {
+        try {
+            if(!downloadPermits.tryAcquire(MAX_PERMIT_WAIT.toMillis(), TimeUnit.MILLISECONDS)){
+                throw new FeedsRefreshThrottledException("no download permit within " + MAX_PERMIT_WAIT.toSeconds() + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FeedsRefreshThrottledException("interrupted waiting for download permit", e);
+        }
+        peakDownloadsInFlight.accumulateAndGet(downloadsInFlight.incrementAndGet(), Math::max);
+        try {
+            return download.get();
+        } finally {
+            downloadsInFlight.decrementAndGet();
+            downloadPermits.release();
+        }
+    }
+
+    public RefreshRun startRun(String name) {
+        peakDownloadsInFlight.set(downloadsInFlight.get());
+        var start = feedsTimer.localDateTimeNow();
+        return new RefreshRun(name, start, isBudgeted() ? start.plus(refreshRunBudget) : null);
+    }
+
+    public class RefreshRun {
+
+        private final String name;
+        private final LocalDateTime start;
+        private final LocalDateTime deadline;
+        private int refreshed = 0;
+        private int deferred = 0;
+
+        private RefreshRun(String name, LocalDateTime start, LocalDateTime deadline) {
+            this.name = name;
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        /**
+         * True if the unit is expected to complete before the deadline, based on its last duration. The first
+         * unit of a run always fits, so every run makes progress.
+         */
+        public boolean fits(String id) {
+            if(deadline == null || refreshed == 0){
+                return true;
+            }
+            var estimate = lastDurations.getOrDefault(id, Duration.ZERO);
+            return !feedsTimer.localDateTimeNow().plus(estimate).isAfter(deadline);
+        }
+
+        public void refreshed(String id, LocalDateTime unitStart) {
+            refreshed++;
+            lastDurations.put(id, Duration.between(unitStart, feedsTimer.localDateTimeNow()));
+        }
+
+        public void deferred(int count) {
+            deferred += count;
+        }
+
+        public void report() {
+            if(refreshed == 0 && deferred == 0){
+                return;
+            }
+            var used = Duration.between(start, feedsTimer.localDateTimeNow());
+            log.info(name + " budget: " + used.toSeconds() + "s used" + (deadline == null ? "" : " of " + refreshRunBudget.toSeconds() + "s") +
+                    ", refreshed: " + refreshed + ", deferred: " + deferred + ", peak downloads in flight: " + peakDownloadsInFlight.get());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsConfigIndex;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Spreads downloads of both scheduling modes: consecutive downloads are interleaved by host, a host is not called
+ * again within feeds.hostMinInterval, and the overall number of downloads per minute is limited by
+ * feeds.maxRefreshesPerMinute (0 = unlimited). The per-feed scheduler defers a feed that has to wait, the group
+ * refresh waits for its turn.
+ */
+@CommonsLog
+public class FeedsRefreshPacer {
+
+    public FeedsRefreshPacer(FeedsTimer feedsTimer) {
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsTimer feedsTimer;
+
+    @Getter
+    @Value("${feeds.maxRefreshesPerMinute:30}")
+    protected int maxRefreshesPerMinute = 30;
+
+    @Value("${feeds.hostMinInterval:PT10S}")
+    protected Duration hostMinInterval = Duration.ofSeconds(10);
+
+    private static final Duration RATE_WINDOW = Duration.ofMinutes(1);
+
+    // not a monitor, the waits of pace() are spent outside
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, LocalDateTime> lastHostRefreshes = new HashMap<>();
+    private final Deque<LocalDateTime> recentRefreshes = new LinkedList<>();
+
+    @PostConstruct
+    protected void init() {
+        log.info("maxRefreshesPerMinute=" + maxRefreshesPerMinute + ", hostMinInterval Seconds: " + hostMinInterval.toSeconds());
+    }
+
+    /**
+     * Orders the items round robin by host, so consecutive downloads go to different hosts. The order within a
+     * host is kept.
+     */
+    public static <T> Deque<T> interleaveHosts(Collection<T> items, Function<T, String> urlOf) {
+        var itemsByHost = new LinkedHashMap<String, Deque<T>>();
+        for(T item : items){
+            itemsByHost.computeIfAbsent(FeedsConfigIndex.lookupHost(urlOf.apply(item)), h -> new LinkedList<>()).add(item);
+        }
+        var interleaved = new LinkedList<T>();
+        while (!itemsByHost.isEmpty()) {
+            var iterator = itemsByHost.values().iterator();
+            while (iterator.hasNext()) {
+                var hostItems = iterator.next();
+                interleaved.add(hostItems.poll());
+                if(hostItems.isEmpty()){
+                    iterator.remove();
+                }
+            }
+        }
+        return interleaved;
+    }
+
+    /**
+     * Time until the host may be called again, zero if it may be called now.
+     */
+    public Duration hostWait(String url) {
+        lock.lock();
+        try {
+            return hostWait(FeedsConfigIndex.lookupHost(url), feedsTimer.localDateTimeNow());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time until the rate limit allows another download, zero if it allows one now.
+     */
+    public Duration rateWait() {
+        lock.lock();
+        try {
+            return rateWait(feedsTimer.localDateTimeNow());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a download to the url's host starting now, without checking the waits.
+     */
+    public void acquire(String url) {
+        lock.lock();
+        try {
+            record(FeedsConfigIndex.lookupHost(url), feedsTimer.localDateTimeNow());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the next slot that both host interval and rate limit allow for a download to the url's host, and
+     * waits for it. The wait ends early if the thread is interrupted.
+     */
+    public void pace(String url) {
+        var host = FeedsConfigIndex.lookupHost(url);
+        Duration wait;
+        lock.lock();
+        try {
+            var now = feedsTimer.localDateTimeNow();
+            var hostWait = hostWait(host, now);
+            var rateWait = rateWait(now);
+            wait = hostWait.compareTo(rateWait) > 0 ? hostWait : rateWait;
+            // counted at its slot, so a concurrent caller queues behind it
+            record(host, now.plus(wait));
+        } finally {
+            lock.unlock();
+        }
+        if(!wait.isZero()){
+            log.debug("-> paced " + host + ": " + wait.toMillis() + " ms");
+            sleep(wait);
+        }
+    }
+
+    protected void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Duration hostWait(String host, LocalDateTime now) {
+        var lastHostRefresh = lastHostRefreshes.get(host);
+        if(lastHostRefresh == null || hostMinInterval.isZero()){
+            return Duration.ZERO;
+        }
+        var wait = Duration.between(now, lastHostRefresh.plus(hostMinInterval));
+        return wait.isNegative() ? Duration.ZERO : wait;
+    }
+
+    private Duration rateWait(LocalDateTime now) {
+        if(maxRefreshesPerMinute <= 0){
+            return Duration.ZERO;
+        }
+        while (!recentRefreshes.isEmpty() && !recentRefreshes.peek().plus(RATE_WINDOW).isAfter(now)) {
+            recentRefreshes.poll();
+        }
+        if(recentRefreshes.size() < maxRefreshesPerMinute){
+            return Duration.ZERO;
+        }
+        // reserved slots ahead of now included, the minute before the new slot must have room
+        var slot = new ArrayList<>(recentRefreshes).get(recentRefreshes.size() - maxRefreshesPerMinute).plus(RATE_WINDOW);
+        return slot.isAfter(now) ? Duration.between(now, slot) : Duration.ZERO;
+    }
+
+    private void record(String host, LocalDateTime slot) {
+        lastHostRefreshes.put(host, slot);
+        if(maxRefreshesPerMinute > 0){
+            recentRefreshes.add(slot);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Refresh-through (feeds.refreshThrough=true): a request for a missing or expired feed triggers one download
+ * on demand. Concurrent requests for the same feed wait for the same download, each at most
+ * feeds.refreshThroughMaxWait. A download that takes longer still completes and is served to later requests.
+ * <p>
+ * Background refreshes without a waiting request (e.g. stale content served while scheduling by group) use the
+ * same single download per feed and are available regardless of feeds.refreshThrough.
+ */
+@CommonsLog
+public class FeedsRefreshThrough {
+
+    public FeedsRefreshThrough(FeedsConfigService feedsConfigService, FeedsDownloadService feedsDownloadService) {
+        this.feedsConfigService = feedsConfigService;
+        this.feedsDownloadService = feedsDownloadService;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+    private final FeedsDownloadService feedsDownloadService;
+
+    @Getter
+    @Value("${feeds.refreshThrough:false}")
+    protected boolean refreshThrough;
+
+    @Value("${feeds.refreshThroughMaxWait:PT10S}")
+    protected Duration refreshThroughMaxWait = Duration.ofSeconds(10);
+
+    private static final int THREADS = 2;
+
+    private final Map<String, CompletableFuture<FeedsCache.FeedCacheEntry>> inFlight = new ConcurrentHashMap<>();
+
+    private ExecutorService executor = null;
+
+    @PostConstruct
+    protected void init() {
+        if(refreshThrough){
+            log.info("refresh-through active - max wait seconds: " + refreshThroughMaxWait.toSeconds());
+        }
+        executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            var thread = new Thread(runnable, "feeds-refresh-through");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        if(executor != null){
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isConfiguredFeed(String key) {
+        return feedsConfigService.getFeedsConfigIndex().lookupFeed(key) != null;
+    }
+
+    /**
+     * Downloads the feed, or joins a download already in flight, and waits for it within the max wait time.
+     * Returns null if the feed is unknown, the download is not possible or it takes too long.
+     */
+    public FeedsCache.FeedCacheEntry refreshAndWait(String key) {
+
+        if(!refreshThrough){
+            return null;
+        }
+        var future = submit(key);
+        if(future == null){
+            return null;
+        }
+
+        try {
+            return future.get(refreshThroughMaxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.info("refresh-through '" + key + "' not completed within max wait");
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("refresh-through '" + key + "' failed: " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Starts a download of the feed unless one is already in flight, without waiting for it.
+     */
+    public void refreshInBackground(String key) {
+        var future = submit(key);
+        if(future != null){
+            future.exceptionally(e -> {
+                log.warn("background refresh '" + key + "' failed: " + e.getMessage());
+                return null;
+            });
+        }
+    }
+
+    // the download in flight for the key, a new one if there is none; null if unknown or not possible
+    private CompletableFuture<FeedsCache.FeedCacheEntry> submit(String key) {
+
+        if(executor == null){
+            return null;
+        }
+        var indexedFeed = feedsConfigService.getFeedsConfigIndex().lookupFeed(key);
+        if(indexedFeed == null){
+            return null;
+        }
+
+        var created = new CompletableFuture<FeedsCache.FeedCacheEntry>();
+        var future = inFlight.putIfAbsent(key, created);
+        if(future != null){
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(refresh(indexedFeed.group(), indexedFeed.feedConfig()));
+                } catch (Exception e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            return null;
+        }
+        return created;
+    }
+
+    protected FeedsCache.FeedCacheEntry refresh(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig) {
+        log.info("refresh-through '" + feedConfig.getKey() + "'");
+        return feedsDownloadService.refreshFeedOnDemand(groupConfig, feedConfig);
+    }
+}
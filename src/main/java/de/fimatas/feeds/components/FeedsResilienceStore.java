@@ -0,0 +1,158 @@
+package de.fimatas.feeds.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsResilienceState;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves circuit breaker states, their failure windows and the backoff deadlines next to the cache file and
+ * restores them at startup, so a restart doesn't retry every known dead upstream at once. Only the leader
+ * saves; a follower that becomes leader restores the state of its predecessor.
+ */
+@CommonsLog
+public class FeedsResilienceStore {
+
+    public FeedsResilienceStore(FeedsDownloadService feedsDownloadService, FeedsBackoff feedsBackoff, FeedsLeaderElection feedsLeaderElection) {
+        this.feedsDownloadService = feedsDownloadService;
+        this.feedsBackoff = feedsBackoff;
+        this.feedsLeaderElection = feedsLeaderElection;
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    private final FeedsDownloadService feedsDownloadService;
+    private final FeedsBackoff feedsBackoff;
+    private final FeedsLeaderElection feedsLeaderElection;
+    private final ObjectMapper objectMapper;
+
+    @Value("${feeds.persistResilienceState:true}")
+    protected boolean persistResilienceState = true;
+
+    private static final Exception RESTORED_FAILURE = new IllegalStateException("restored failure");
+
+    private boolean wasLeader = false;
+    private String lastSavedJson = null;
+
+    @PostConstruct
+    protected void init() {
+        if(!persistResilienceState){
+            return;
+        }
+        wasLeader = feedsLeaderElection.isLeader();
+        restore();
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        saveIfLeader();
+    }
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${feeds.resilienceStateDelay:PT1M}")
+    public synchronized void saveIfLeader() {
+        if(!persistResilienceState){
+            return;
+        }
+        try {
+            if(!feedsLeaderElection.isLeader()){
+                wasLeader = false;
+                return;
+            }
+            if(!wasLeader){
+                wasLeader = true;
+                restore();
+                return;
+            }
+            save();
+        } catch (Exception e) {
+            log.warn("resilience state could not be saved: " + e.getMessage());
+        }
+    }
+
+    protected synchronized void save() throws Exception {
+        var state = new FeedsResilienceState();
+        feedsDownloadService.getFeedsDownloadCircuitBreaker().getCircuitBreakers().forEach((key, circuitBreaker) -> {
+            var feedState = state.getFeeds().computeIfAbsent(key, k -> new FeedsResilienceState.FeedState());
+            feedState.setCircuitBreakerState(circuitBreaker.getState().name());
+            feedState.setFailedCalls(circuitBreaker.getMetrics().getNumberOfFailedCalls());
+            feedState.setSuccessfulCalls(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        });
+        feedsBackoff.getBackoffStates().forEach((key, backoffState) -> {
+            var feedState = state.getFeeds().computeIfAbsent(key, k -> new FeedsResilienceState.FeedState());
+            feedState.setBackoffFailures(backoffState.failures());
+            feedState.setBackoffErrorClass(backoffState.errorClass());
+            feedState.setRetryNotBefore(backoffState.retryNotBefore());
+        });
+
+        var json = objectMapper.writeValueAsString(state);
+        if(json.equals(lastSavedJson)){
+            return;
+        }
+        var tempPath = FeedsCache.lookupCacheFile("resilience.json.tmp").toPath();
+        Files.writeString(tempPath, json);
+        Files.move(tempPath, lookupStateFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSavedJson = json;
+    }
+
+    protected synchronized void restore() {
+        var file = lookupStateFile();
+        if(!file.exists() || file.length() == 0){
+            return;
+        }
+        try {
+            var state = objectMapper.readValue(file, FeedsResilienceState.class);
+            var openCircuitBreakers = new HashSet<String>();
+            state.getFeeds().forEach((key, feedState) -> {
+                // backoff first, an open circuit breaker takes its wait from it
+                if(feedState.getRetryNotBefore() != null){
+                    feedsBackoff.restore(key, new FeedsBackoff.BackoffState(feedState.getBackoffFailures(), feedState.getBackoffErrorClass(), feedState.getRetryNotBefore()));
+                }
+                if(feedState.getCircuitBreakerState() != null && restoreCircuitBreaker(key, feedState)){
+                    openCircuitBreakers.add(key);
+                }
+            });
+            log.info("resilience state restored - feeds: " + state.getFeeds().size() + ", open circuit breakers: " + openCircuitBreakers);
+        } catch (Exception e) {
+            log.warn("resilience state could not be restored: " + e.getMessage());
+        }
+    }
+
+    private boolean restoreCircuitBreaker(String key, FeedsResilienceState.FeedState feedState) {
+        var circuitBreaker = feedsDownloadService.getFeedsDownloadCircuitBreaker().getCircuitBreaker(key);
+        circuitBreaker.reset();
+        var savedState = CircuitBreaker.State.valueOf(feedState.getCircuitBreakerState());
+        if(savedState == CircuitBreaker.State.OPEN){
+            // the wait in open state starts again with the restart
+            circuitBreaker.transitionToOpenState();
+            return true;
+        }
+        if(savedState == CircuitBreaker.State.HALF_OPEN){
+            circuitBreaker.transitionToOpenState();
+            circuitBreaker.transitionToHalfOpenState();
+            return true;
+        }
+        for (int i = 0; i < feedState.getSuccessfulCalls(); i++) {
+            circuitBreaker.onSuccess(0, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < feedState.getFailedCalls(); i++) {
+            circuitBreaker.onError(0, TimeUnit.MILLISECONDS, RESTORED_FAILURE);
+        }
+        return circuitBreaker.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    private static File lookupStateFile() {
+        return FeedsCache.lookupCacheFile("resilience.json");
+    }
+}
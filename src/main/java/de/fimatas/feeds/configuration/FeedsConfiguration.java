@@ -2,12 +2,49 @@ package de.fimatas.feeds.configuration;
 
 import de.fimatas.feeds.components.*;
 import de.fimatas.feeds.controller.ExampleController;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsCacheStorage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@CommonsLog
 public class FeedsConfiguration {
 
+    @Value("${feeds.cacheStorage:json}")
+    private String cacheStorage;
+
+    @Value("${feeds.leaderElection:false}")
+    private boolean leaderElection;
+
+    @PostConstruct
+    private void init() {
+        log.info("cacheStorage=" + cacheStorage);
+        // followers reload the cache file written by the leader, the other storages can't be shared
+        if(leaderElection && !cacheStorage.equals("json")){
+            throw new IllegalStateException("feeds.leaderElection requires feeds.cacheStorage=json, not: " + cacheStorage);
+        }
+        FeedsCache.useStorage(createCacheStorage());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        FeedsCache.closeStorage();
+    }
+
+    private FeedsCacheStorage createCacheStorage() {
+        return switch (cacheStorage) {
+            case "json" -> new FeedsCacheJsonFileStorage();
+            case "memory" -> new FeedsCacheMemoryStorage();
+            case "mvstore" -> new FeedsCacheMVStoreStorage();
+            default -> throw new IllegalStateException("Unexpected cacheStorage: " + cacheStorage);
+        };
+    }
+
     @Bean
     public FeedsConfigService feedsConfigService() {
         return new FeedsConfigService();
@@ -15,7 +52,12 @@ public class FeedsConfiguration {
 
     @Bean
     public FeedsProcessingService feedsProcessingService() {
-        return new FeedsProcessingService(feedsConfigService());
+        return new FeedsProcessingService(feedsConfigService(), feedsNearDuplicates());
+    }
+
+    @Bean
+    public FeedsNearDuplicates feedsNearDuplicates() {
+        return new FeedsNearDuplicates(feedsConfigService(), feedsTimer());
     }
 
     @Bean
@@ -30,7 +72,72 @@ public class FeedsConfiguration {
 
     @Bean
     public FeedsDownloadService feedsDownloadService() {
-        return new FeedsDownloadService(feedsConfigService(), feedsProcessingService(), feedsHttpClient(), feedsTimer());
+        return new FeedsDownloadService(feedsConfigService(), feedsProcessingService(), feedsHttpClient(), feedsTimer(), feedsLeaderElection(), feedsAdaptiveTtl(), feedsRefreshGovernor(), feedsBackoff(), feedsRefreshPacer());
+    }
+
+    @Bean
+    public FeedsDueScheduler feedsDueScheduler() {
+        return new FeedsDueScheduler(feedsConfigService(), feedsDownloadService(), feedsHttpClient(), feedsTimer(), feedsRefreshGovernor(), feedsBackoff(), feedsRefreshPacer(), feedsRefreshThrough());
+    }
+
+    @Bean
+    public FeedsResilienceStore feedsResilienceStore() {
+        return new FeedsResilienceStore(feedsDownloadService(), feedsBackoff(), feedsLeaderElection());
+    }
+
+    @Bean
+    public FeedsBackoff feedsBackoff() {
+        return new FeedsBackoff(feedsTimer());
+    }
+
+    @Bean
+    public FeedsRefreshGovernor feedsRefreshGovernor() {
+        return new FeedsRefreshGovernor(feedsTimer());
+    }
+
+    @Bean
+    public FeedsRefreshPacer feedsRefreshPacer() {
+        return new FeedsRefreshPacer(feedsTimer());
+    }
+
+    @Bean
+    public FeedsRefreshThrough feedsRefreshThrough() {
+        return new FeedsRefreshThrough(feedsConfigService(), feedsDownloadService());
+    }
+
+    @Bean
+    public FeedsRefilterService feedsRefilterService() {
+        return new FeedsRefilterService(feedsConfigService(), feedsProcessingService(), feedsLeaderElection());
+    }
+
+    @Bean
+    public FeedsOpmlService feedsOpmlService() {
+        return new FeedsOpmlService(feedsConfigService(), feedsLeaderElection());
+    }
+
+    @Bean
+    public FeedsGroupAggregator feedsGroupAggregator() {
+        return new FeedsGroupAggregator(feedsConfigService(), feedsDownloadService());
+    }
+
+    @Bean
+    public FeedsItemEvents feedsItemEvents() {
+        return new FeedsItemEvents(feedsConfigService(), feedsDownloadService());
+    }
+
+    @Bean
+    public FeedsAdaptiveTtl feedsAdaptiveTtl() {
+        return new FeedsAdaptiveTtl();
+    }
+
+    @Bean
+    public FeedsLeaderElection feedsLeaderElection() {
+        return new FeedsLeaderElection();
+    }
+
+    @Bean
+    public FeedsCacheMonitor feedsCacheMonitor() {
+        return new FeedsCacheMonitor();
     }
 
     @Bean
@@ -0,0 +1,83 @@
+package de.fimatas.feeds.configuration;
+
+import de.fimatas.feeds.components.FeedsConfigService;
+import de.fimatas.feeds.components.FeedsDueScheduler;
+import de.fimatas.feeds.components.FeedsGroupAggregator;
+import de.fimatas.feeds.components.FeedsItemEvents;
+import de.fimatas.feeds.components.FeedsRefreshThrough;
+import de.fimatas.feeds.components.FeedsTimer;
+import de.fimatas.feeds.controller.ExampleController;
+import de.fimatas.feeds.controller.FeedHandler;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsOpml;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Routes of the reactive stack, active with spring.main.web-application-type=reactive. The servlet controllers
+ * are not created then.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@CommonsLog
+public class FeedsReactiveConfiguration {
+
+    @Value("${feeds.rootRedirectUrl}")
+    private String rootRedirectUrl;
+
+    @Value("${feeds.opmlExport:false}")
+    private boolean opmlExport;
+
+    @Bean
+    public FeedHandler feedHandler(FeedsRefreshThrough feedsRefreshThrough, FeedsDueScheduler feedsDueScheduler, FeedsGroupAggregator feedsGroupAggregator, FeedsTimer feedsTimer) {
+        log.info("reactive serving active");
+        return new FeedHandler(feedsRefreshThrough, feedsDueScheduler, feedsGroupAggregator, feedsTimer);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> feedsRoutes(FeedHandler feedHandler, FeedsConfigService feedsConfigService, FeedsItemEvents feedsItemEvents, ExampleController exampleController) {
+        return RouterFunctions.route()
+                .GET("/api/feeds/{key}", feedHandler::getFeed)
+                .POST("/api/feeds/batch", feedHandler::getFeeds)
+                .GET("/api/groups/{groupId}", feedHandler::getGroup)
+                .GET("/api/events/feeds/{key}", request -> events(feedsItemEvents.subscribeFeed(request.pathVariable("key"))))
+                .GET("/api/events/groups/{groupId}", request -> events(feedsItemEvents.subscribeGroup(request.pathVariable("groupId"))))
+                .GET("/api/healthcheck", request -> ServerResponse.status(FeedsCache.isNotValidStatus() ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK).build())
+                .GET("/api/opml", request -> !opmlExport ? ServerResponse.notFound().build() : ServerResponse.ok()
+                        .contentType(MediaType.parseMediaType("text/x-opml;charset=UTF-8"))
+                        .bodyValue(FeedsOpml.export(feedsConfigService.getFeedsConfigIndex().getConfig())))
+                .GET("/example", request -> {
+                    if(!exampleController.useTestConfig){
+                        return ServerResponse.notFound().build();
+                    }
+                    var feedsResponse = exampleController.getFeedResponse(request.queryParam("key").orElse(""));
+                    var response = ServerResponse.status(feedsResponse.getStatusCode())
+                            .contentType(MediaType.parseMediaType("application/rss+xml;charset=UTF-8"));
+                    feedsResponse.getHeaders().forEach(response::header);
+                    return feedsResponse.getBody() == null ? response.build() : response.bodyValue(feedsResponse.getBody());
+                })
+                .GET("/", request -> ServerResponse.temporaryRedirect(URI.create(rootRedirectUrl)).build())
+                .build();
+    }
+
+    private static Mono<ServerResponse> events(Flux<ServerSentEvent<FeedsItemEvents.ItemEvent>> events) {
+        if(events == null){
+            return ServerResponse.notFound().build();
+        }
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(BodyInserters.fromServerSentEvents(events));
+    }
+}
@@ -0,0 +1,38 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.components.FeedsItemEvents;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import reactor.core.publisher.Flux;
+
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/events")
+public class EventController {
+
+    public EventController(FeedsItemEvents feedsItemEvents) {
+        this.feedsItemEvents = feedsItemEvents;
+    }
+
+    private final FeedsItemEvents feedsItemEvents;
+
+    @GetMapping(path = "/feeds/{key}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<FeedsItemEvents.ItemEvent>>> subscribeFeed(@PathVariable String key) {
+        return toResponse(feedsItemEvents.subscribeFeed(key));
+    }
+
+    @GetMapping(path = "/groups/{groupId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<FeedsItemEvents.ItemEvent>>> subscribeGroup(@PathVariable String groupId) {
+        return toResponse(feedsItemEvents.subscribeGroup(groupId));
+    }
+
+    private static ResponseEntity<Flux<ServerSentEvent<FeedsItemEvents.ItemEvent>>> toResponse(Flux<ServerSentEvent<FeedsItemEvents.ItemEvent>> events) {
+        return events == null ? ResponseEntity.notFound().build() : ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(events);
+    }
+}
@@ -0,0 +1,102 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+import org.springframework.http.HttpHeaders;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Batch retrieval (POST /api/feeds/batch) for clients polling many feeds: the request lists feed keys with the ETag
+ * the client holds, the response is a multipart/mixed body with one part per key. Unchanged feeds get a part with
+ * 'Status: 304' and no body, so only changed feeds are transferred. Bodies are the cache's byte arrays, not copies.
+ */
+class FeedBatch {
+
+    private FeedBatch() {
+    }
+
+    static final int MAX_ITEMS = 1000;
+
+    private static final byte[] CRLF = bytes("\r\n");
+
+    /**
+     * One requested feed; etag is null if the client has no version yet.
+     */
+    record Item(String key, String etag) {
+    }
+
+    static boolean isValid(List<Item> items) {
+        return items != null && !items.isEmpty() && items.size() <= MAX_ITEMS
+                && items.stream().allMatch(item -> item != null && item.key() != null);
+    }
+
+    static String newBoundary() {
+        return "feeds-" + UUID.randomUUID();
+    }
+
+    static String contentType(String boundary) {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    /**
+     * Builds the body as chunks to be written in order. Stale feeds are reported to onStale, like a single request.
+     */
+    static List<byte[]> buildBody(List<Item> items, String boundary, boolean deflate,
+                                  Function<String, FeedsCache.FeedCacheEntry> lookup, Consumer<String> onStale) {
+        var chunks = new ArrayList<byte[]>(items.size() * 3 + 1);
+        for(var item : items){
+            var feedCacheEntry = lookup.apply(item.key());
+            var headers = new StringBuilder("--").append(boundary).append("\r\n");
+            // the key is client input, encoded it can't break the part headers
+            header(headers, HttpHeaders.CONTENT_LOCATION, "/api/feeds/" + URLEncoder.encode(item.key(), StandardCharsets.UTF_8));
+            if(feedCacheEntry == null || !feedCacheEntry.hasActualContent()){
+                header(headers, "Status", feedCacheEntry == null ? "404" : "503");
+                chunks.add(bytes(headers.append("\r\n\r\n").toString()));
+                continue;
+            }
+            var etag = FeedHeaders.buildETagHeaderField(feedCacheEntry, deflate);
+            if(feedCacheEntry.getFreshness() == FeedsCache.Freshness.STALE){
+                onStale.accept(item.key());
+            }
+            if(FeedHeaders.matchesETag(item.etag(), etag)){
+                header(headers, "Status", "304");
+                header(headers, HttpHeaders.ETAG, etag);
+                chunks.add(bytes(headers.append("\r\n\r\n").toString()));
+                continue;
+            }
+            var body = deflate ? feedCacheEntry.getContentDeflated() : FeedsCompression.inflateToBytes(feedCacheEntry.getContentDeflated());
+            header(headers, "Status", "200");
+            header(headers, HttpHeaders.ETAG, etag);
+            header(headers, HttpHeaders.LAST_MODIFIED, FeedHeaders.buildLastModifiedHeaderField(feedCacheEntry));
+            header(headers, HttpHeaders.CONTENT_TYPE, FeedHeaders.buildContentTypeHeaderField(feedCacheEntry));
+            if(deflate){
+                header(headers, HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING);
+            }
+            header(headers, HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
+            chunks.add(bytes(headers.append("\r\n").toString()));
+            chunks.add(body);
+            chunks.add(CRLF);
+        }
+        chunks.add(bytes("--" + boundary + "--\r\n"));
+        return chunks;
+    }
+
+    static long length(List<byte[]> chunks) {
+        return chunks.stream().mapToLong(chunk -> chunk.length).sum();
+    }
+
+    private static void header(StringBuilder headers, String name, String value) {
+        headers.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,31 +1,64 @@
 package de.fimatas.feeds.controller;
 
+import de.fimatas.feeds.components.FeedsDueScheduler;
+import de.fimatas.feeds.components.FeedsRefreshThrough;
+import de.fimatas.feeds.components.FeedsTimer;
 import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 
 @Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/feeds")
 @CommonsLog
 public class FeedController {
 
+    public FeedController(FeedsRefreshThrough feedsRefreshThrough, FeedsDueScheduler feedsDueScheduler, FeedsTimer feedsTimer) {
+        this.feedsRefreshThrough = feedsRefreshThrough;
+        this.feedsDueScheduler = feedsDueScheduler;
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsRefreshThrough feedsRefreshThrough;
+    private final FeedsDueScheduler feedsDueScheduler;
+    private final FeedsTimer feedsTimer;
+
     @GetMapping("/{key}")
     @ResponseBody
-    public void getFeed(@PathVariable String key, HttpServletResponse response) throws IOException {
+    public void getFeed(@PathVariable String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-        if(FeedsCache.getInstance().isNotValid()){
+        if(FeedsCache.isNotValidStatus()){
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             return;
         }
 
-        final FeedsCache.FeedCacheEntry feedCacheEntry = FeedsCache.getInstance().lookupFeed(key);
+        FeedsCache.FeedCacheEntry feedCacheEntry = FeedsCache.getInstance().lookupFeed(key);
+        if((feedCacheEntry == null || !feedCacheEntry.hasActualContent()) && feedsRefreshThrough.isRefreshThrough()){
+            var refreshedEntry = feedsRefreshThrough.refreshAndWait(key);
+            if(refreshedEntry != null){
+                feedCacheEntry = refreshedEntry;
+            }else if(feedCacheEntry == null && feedsRefreshThrough.isConfiguredFeed(key)){
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                log.info("getFeed '" + key + "' SERVICE_UNAVAILABLE (refresh-through)");
+                return;
+            }
+        }
         if(feedCacheEntry == null){
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             log.info("getFeed '" + key + "' NOT_FOUND");
@@ -37,25 +70,68 @@ public class FeedController {
             return;
         }
 
+        var deflate = FeedHeaders.acceptsDeflate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = FeedHeaders.buildETagHeaderField(feedCacheEntry, deflate);
+        var ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
         response.setStatus(HttpServletResponse.SC_OK);
-        response.setContentType(buildContentTypeHeaderField(feedCacheEntry));
-        response.setHeader("Last-Modified", buildLastModifiedHeaderField(feedCacheEntry));
-        response.getWriter().print(feedCacheEntry.getContent());
-    }
-
-    private static String buildLastModifiedHeaderField(FeedsCache.FeedCacheEntry feedCacheEntry) {
-        if(feedCacheEntry.getHeaderLastModified() != null){
-            return feedCacheEntry.getHeaderLastModified();
+        response.setContentType(FeedHeaders.buildContentTypeHeaderField(feedCacheEntry));
+        response.setHeader("Last-Modified", FeedHeaders.buildLastModifiedHeaderField(feedCacheEntry));
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING + ", " + FeedHeaders.A_IM);
+        if(feedCacheEntry.getFreshness() == FeedsCache.Freshness.STALE){
+            // served at once, revalidated in the background
+            response.setHeader(HttpHeaders.AGE, Long.toString(Duration.between(feedCacheEntry.getLastRefresh(), feedsTimer.localDateTimeNow()).toSeconds()));
+            response.setHeader(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+            feedsDueScheduler.expedite(key);
+        }
+        if(FeedHeaders.matchesETag(ifNoneMatch, etag)){
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        String delta = null;
+        if(FeedHeaders.acceptsFeedDelta(request.getHeader(FeedHeaders.A_IM))){
+            delta = FeedHeaders.buildFeedDelta(feedCacheEntry, FeedHeaders.lookupClientVersion(ifNoneMatch));
+        }
+        if(delta != null){
+            // RFC 3229: only the new items, not to be stored by caches unaware of instance manipulations
+            response.setStatus(HttpStatus.IM_USED.value());
+            response.setHeader(FeedHeaders.IM, FeedHeaders.FEED_INSTANCE_MANIPULATION);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store, im");
+        }
+        if(deflate){
+            // stored bytes are sent as they are, without decompressing
+            var contentDeflated = delta == null ? feedCacheEntry.getContentDeflated() : FeedsCompression.deflate(delta);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING);
+            response.setContentLength(contentDeflated.length);
+            response.getOutputStream().write(contentDeflated);
         }else{
-            return Long.toString(System.currentTimeMillis());
+            response.getWriter().print(delta == null ? feedCacheEntry.getContent() : delta);
         }
     }
 
-    private static String buildContentTypeHeaderField(FeedsCache.FeedCacheEntry feedCacheEntry) {
-        if(feedCacheEntry.getHeaderContentType() != null){
-                return feedCacheEntry.getHeaderContentType();
-        }else{
-            return "application/xml";
+    @PostMapping("/batch")
+    @ResponseBody
+    public void getFeeds(@RequestBody(required = false) List<FeedBatch.Item> items, HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if(FeedsCache.isNotValidStatus()){
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if(!FeedBatch.isValid(items)){
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        var boundary = FeedBatch.newBoundary();
+        var chunks = FeedBatch.buildBody(items, boundary, FeedHeaders.acceptsDeflate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)),
+                FeedsCache.getInstance()::lookupFeed, feedsDueScheduler::expedite);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(FeedBatch.contentType(boundary));
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentLengthLong(FeedBatch.length(chunks));
+        var outputStream = response.getOutputStream();
+        for(var chunk : chunks){
+            outputStream.write(chunk);
         }
     }
 }
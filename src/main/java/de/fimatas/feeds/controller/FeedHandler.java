@@ -0,0 +1,190 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.components.FeedsDueScheduler;
+import de.fimatas.feeds.components.FeedsGroupAggregator;
+import de.fimatas.feeds.components.FeedsRefreshThrough;
+import de.fimatas.feeds.components.FeedsTimer;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reactive variant of {@link FeedController} (spring.main.web-application-type=reactive). Cached bodies are written
+ * as buffers wrapping the cache's byte arrays, so a slow reader holds neither a thread nor a copy of the feed.
+ */
+@CommonsLog
+public class FeedHandler {
+
+    public FeedHandler(FeedsRefreshThrough feedsRefreshThrough, FeedsDueScheduler feedsDueScheduler, FeedsGroupAggregator feedsGroupAggregator, FeedsTimer feedsTimer) {
+        this.feedsRefreshThrough = feedsRefreshThrough;
+        this.feedsDueScheduler = feedsDueScheduler;
+        this.feedsGroupAggregator = feedsGroupAggregator;
+        this.feedsTimer = feedsTimer;
+    }
+
+    private final FeedsRefreshThrough feedsRefreshThrough;
+    private final FeedsDueScheduler feedsDueScheduler;
+    private final FeedsGroupAggregator feedsGroupAggregator;
+    private final FeedsTimer feedsTimer;
+
+    public Mono<ServerResponse> getFeed(ServerRequest request) {
+
+        if(FeedsCache.isNotValidStatus()){
+            return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        var key = request.pathVariable("key");
+        var feedCacheEntry = FeedsCache.getInstance().lookupFeed(key);
+        if((feedCacheEntry == null || !feedCacheEntry.hasActualContent()) && feedsRefreshThrough.isRefreshThrough()){
+            // the download blocks, so it must not wait on the event loop
+            return Mono.fromCallable(() -> Optional.ofNullable(feedsRefreshThrough.refreshAndWait(key)))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(refreshedEntry -> {
+                        if(refreshedEntry.isPresent()){
+                            return respond(key, refreshedEntry.get(), request);
+                        }
+                        if(feedCacheEntry == null && feedsRefreshThrough.isConfiguredFeed(key)){
+                            log.info("getFeed '" + key + "' SERVICE_UNAVAILABLE (refresh-through)");
+                            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                        }
+                        return respond(key, feedCacheEntry, request);
+                    });
+        }
+        return respond(key, feedCacheEntry, request);
+    }
+
+    public Mono<ServerResponse> getFeeds(ServerRequest request) {
+
+        if(FeedsCache.isNotValidStatus()){
+            return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        var deflate = FeedHeaders.acceptsDeflate(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+        return request.bodyToMono(FeedBatch.Item[].class)
+                .defaultIfEmpty(new FeedBatch.Item[0])
+                .flatMap(itemArray -> {
+                    var items = List.of(itemArray);
+                    if(!FeedBatch.isValid(items)){
+                        return ServerResponse.status(HttpStatus.BAD_REQUEST).build();
+                    }
+                    var boundary = FeedBatch.newBoundary();
+                    var chunks = FeedBatch.buildBody(items, boundary, deflate, FeedsCache.getInstance()::lookupFeed, feedsDueScheduler::expedite);
+                    return ServerResponse.ok()
+                            .contentType(MediaType.parseMediaType(FeedBatch.contentType(boundary)))
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                            .contentLength(FeedBatch.length(chunks))
+                            .body(wrap(chunks));
+                });
+    }
+
+    public Mono<ServerResponse> getGroup(ServerRequest request) {
+
+        if(FeedsCache.isNotValidStatus()){
+            return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        var groupId = request.pathVariable("groupId");
+        // merging reads and parses the changed member feeds, so it must not run on the event loop
+        return Mono.fromCallable(() -> Optional.ofNullable(feedsGroupAggregator.lookupAggregate(groupId)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(aggregate -> aggregate.isPresent() ? respondGroup(aggregate.get(), request) : notFoundGroup(groupId));
+    }
+
+    private Mono<ServerResponse> notFoundGroup(String groupId) {
+        log.info("getGroup '" + groupId + "' NOT_FOUND");
+        return ServerResponse.status(HttpStatus.NOT_FOUND).build();
+    }
+
+    private Mono<ServerResponse> respondGroup(FeedsGroupAggregator.Aggregate aggregate, ServerRequest request) {
+
+        var feedCacheEntry = aggregate.feedCacheEntry();
+        var deflate = FeedHeaders.acceptsDeflate(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = FeedHeaders.buildETagHeaderField(feedCacheEntry, deflate);
+        var notModified = FeedHeaders.matchesETag(request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH), etag);
+        var response = ServerResponse.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, FeedHeaders.buildContentTypeHeaderField(feedCacheEntry))
+                .header(HttpHeaders.LAST_MODIFIED, FeedHeaders.buildLastModifiedHeaderField(feedCacheEntry))
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if(notModified){
+            return response.build();
+        }
+        byte[] body;
+        if(deflate){
+            body = feedCacheEntry.getContentDeflated();
+            response.header(HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING);
+        }else{
+            body = aggregate.content();
+        }
+        return response.contentLength(body.length).body(wrap(body));
+    }
+
+    private Mono<ServerResponse> respond(String key, FeedsCache.FeedCacheEntry feedCacheEntry, ServerRequest request) {
+
+        if(feedCacheEntry == null){
+            log.info("getFeed '" + key + "' NOT_FOUND");
+            return ServerResponse.status(HttpStatus.NOT_FOUND).build();
+        }
+        if(!feedCacheEntry.hasActualContent()){
+            log.info("getFeed '" + key + "' SERVICE_UNAVAILABLE");
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        var deflate = FeedHeaders.acceptsDeflate(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = FeedHeaders.buildETagHeaderField(feedCacheEntry, deflate);
+        var ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+        var notModified = FeedHeaders.matchesETag(ifNoneMatch, etag);
+        String delta = null;
+        if(!notModified && FeedHeaders.acceptsFeedDelta(request.headers().firstHeader(FeedHeaders.A_IM))){
+            delta = FeedHeaders.buildFeedDelta(feedCacheEntry, FeedHeaders.lookupClientVersion(ifNoneMatch));
+        }
+
+        var response = ServerResponse.status(notModified ? HttpStatus.NOT_MODIFIED : delta != null ? HttpStatus.IM_USED : HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, FeedHeaders.buildContentTypeHeaderField(feedCacheEntry))
+                .header(HttpHeaders.LAST_MODIFIED, FeedHeaders.buildLastModifiedHeaderField(feedCacheEntry))
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING + ", " + FeedHeaders.A_IM);
+        if(feedCacheEntry.getFreshness() == FeedsCache.Freshness.STALE){
+            response.header(HttpHeaders.AGE, Long.toString(Duration.between(feedCacheEntry.getLastRefresh(), feedsTimer.localDateTimeNow()).toSeconds()));
+            response.header(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+            feedsDueScheduler.expedite(key);
+        }
+        if(notModified){
+            return response.build();
+        }
+        if(delta != null){
+            response.header(FeedHeaders.IM, FeedHeaders.FEED_INSTANCE_MANIPULATION);
+            response.header(HttpHeaders.CACHE_CONTROL, "no-store, im");
+        }
+        byte[] body;
+        if(deflate){
+            body = delta == null ? feedCacheEntry.getContentDeflated() : FeedsCompression.deflate(delta);
+            response.header(HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING);
+        }else{
+            body = delta == null ? FeedsCompression.inflateToBytes(feedCacheEntry.getContentDeflated()) : delta.getBytes(StandardCharsets.UTF_8);
+        }
+        return response.contentLength(body.length).body(wrap(body));
+    }
+
+    // no copy: cache entries are replaced on refresh, their arrays are never modified
+    private static BodyInserter<byte[], ReactiveHttpOutputMessage> wrap(byte[] body) {
+        return (outputMessage, context) -> outputMessage.writeWith(Mono.fromSupplier(() -> outputMessage.bufferFactory().wrap(body)));
+    }
+
+    private static BodyInserter<List<byte[]>, ReactiveHttpOutputMessage> wrap(List<byte[]> chunks) {
+        return (outputMessage, context) -> outputMessage.writeWith(Flux.fromIterable(chunks).map(outputMessage.bufferFactory()::wrap));
+    }
+}
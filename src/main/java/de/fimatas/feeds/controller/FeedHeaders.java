@@ -0,0 +1,132 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+
+import java.time.Instant;
+
+/**
+ * Response header values shared by the servlet and the reactive feed endpoint.
+ */
+class FeedHeaders {
+
+    private FeedHeaders() {
+    }
+
+    static final String A_IM = "A-IM";
+    static final String IM = "IM";
+    static final String FEED_INSTANCE_MANIPULATION = "feed";
+
+    private static final String ETAG_DEFLATE_SUFFIX = "-" + FeedsCompression.CONTENT_ENCODING;
+
+    static boolean acceptsDeflate(String acceptEncoding) {
+        if(acceptEncoding == null){
+            return false;
+        }
+        for(String coding : acceptEncoding.split(",")){
+            var parts = coding.trim().split(";");
+            if(parts[0].trim().equalsIgnoreCase(FeedsCompression.CONTENT_ENCODING)){
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    static String buildLastModifiedHeaderField(FeedsCache.FeedCacheEntry feedCacheEntry) {
+        if(feedCacheEntry.getHeaderLastModified() != null){
+            return feedCacheEntry.getHeaderLastModified();
+        }else{
+            return Long.toString(System.currentTimeMillis());
+        }
+    }
+
+    static String buildContentTypeHeaderField(FeedsCache.FeedCacheEntry feedCacheEntry) {
+        if(feedCacheEntry.getHeaderContentType() != null){
+                return feedCacheEntry.getHeaderContentType();
+        }else{
+            return "application/xml";
+        }
+    }
+
+    /**
+     * Strong validator from checksum and length of the stored content, so an unchanged refresh keeps its ETag.
+     * The newest item's pubDate and the hash of the items' identities are appended, they're the client's version
+     * for a delta request. The deflated representation has different bytes, so its ETag gets the content coding
+     * as suffix.
+     */
+    static String buildETagHeaderField(FeedsCache.FeedCacheEntry feedCacheEntry, boolean deflate) {
+        var itemIndex = feedCacheEntry.getItemIndex();
+        var newestPublished = itemIndex.getNewestPublished();
+        return "\"" + itemIndex.getChecksum() + (newestPublished == null ? "" : "-" + Long.toHexString(newestPublished.getEpochSecond())
+                + "-" + itemIndex.hashItemsPublishedUntil(newestPublished)) + (deflate ? ETAG_DEFLATE_SUFFIX : "") + "\"";
+    }
+
+    static boolean matchesETag(String ifNoneMatch, String etag) {
+        if(ifNoneMatch == null){
+            return false;
+        }
+        for(String candidate : ifNoneMatch.split(",")){
+            var trimmed = candidate.trim();
+            if(trimmed.equals("*") || trimmed.replaceFirst("^W/", "").equals(etag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsFeedDelta(String aIm) {
+        if(aIm == null){
+            return false;
+        }
+        for(String manipulation : aIm.split(",")){
+            if(manipulation.trim().split(";")[0].trim().equalsIgnoreCase(FEED_INSTANCE_MANIPULATION)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The client's version for a delta, from the ETag it holds (either encoding). If-Modified-Since isn't used: a
+     * date alone can't tell which items the client has.
+     */
+    static ClientVersion lookupClientVersion(String ifNoneMatch) {
+        if(ifNoneMatch == null){
+            return null;
+        }
+        var opaqueTag = ifNoneMatch.split(",")[0].trim().replaceFirst("^W/", "").replace("\"", "");
+        if(opaqueTag.endsWith(ETAG_DEFLATE_SUFFIX)){
+            opaqueTag = opaqueTag.substring(0, opaqueTag.length() - ETAG_DEFLATE_SUFFIX.length());
+        }
+        var parts = opaqueTag.split("-");
+        if(parts.length != 4){
+            return null;
+        }
+        try {
+            return new ClientVersion(Instant.ofEpochSecond(Long.parseLong(parts[2], 16)), parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * RFC 3229 'feed' delta: the content with only the items newer than the client's version. Null if a full
+     * response is needed - the version is unknown, items can't be dated, the client has none of the items or the
+     * items up to its version aren't the ones it holds (e.g. an item was added with an older pubDate).
+     */
+    static String buildFeedDelta(FeedsCache.FeedCacheEntry feedCacheEntry, ClientVersion clientVersion) {
+        var itemIndex = feedCacheEntry.getItemIndex();
+        if(clientVersion == null || itemIndex.getNewestPublished() == null
+                || itemIndex.countPublishedAfter(clientVersion.published()) == itemIndex.size()
+                || !itemIndex.hashItemsPublishedUntil(clientVersion.published()).equals(clientVersion.itemSet())){
+            return null;
+        }
+        return itemIndex.retainPublishedAfter(feedCacheEntry.getContent(), clientVersion.published());
+    }
+
+    /**
+     * The newest item the client holds and the hash of the identities of all its items.
+     */
+    record ClientVersion(Instant published, String itemSet) {
+    }
+}
@@ -0,0 +1,69 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.components.FeedsGroupAggregator;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.apachecommons.CommonsLog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.IOException;
+
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/groups")
+@CommonsLog
+public class GroupController {
+
+    public GroupController(FeedsGroupAggregator feedsGroupAggregator) {
+        this.feedsGroupAggregator = feedsGroupAggregator;
+    }
+
+    private final FeedsGroupAggregator feedsGroupAggregator;
+
+    @GetMapping("/{groupId}")
+    @ResponseBody
+    public void getGroup(@PathVariable String groupId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if(FeedsCache.isNotValidStatus()){
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        var aggregate = feedsGroupAggregator.lookupAggregate(groupId);
+        if(aggregate == null){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            log.info("getGroup '" + groupId + "' NOT_FOUND");
+            return;
+        }
+
+        var feedCacheEntry = aggregate.feedCacheEntry();
+        var deflate = FeedHeaders.acceptsDeflate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = FeedHeaders.buildETagHeaderField(feedCacheEntry, deflate);
+        response.setContentType(FeedHeaders.buildContentTypeHeaderField(feedCacheEntry));
+        response.setHeader(HttpHeaders.LAST_MODIFIED, FeedHeaders.buildLastModifiedHeaderField(feedCacheEntry));
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if(FeedHeaders.matchesETag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)){
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        byte[] body;
+        if(deflate){
+            body = feedCacheEntry.getContentDeflated();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING);
+        }else{
+            body = aggregate.content();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,37 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.components.FeedsConfigService;
+import de.fimatas.feeds.util.FeedsOpml;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.io.IOException;
+
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class OpmlController {
+
+    public OpmlController(FeedsConfigService feedsConfigService) {
+        this.feedsConfigService = feedsConfigService;
+    }
+
+    private final FeedsConfigService feedsConfigService;
+
+    // the upstream urls may contain tokens, so the export is off by default
+    @Value("${feeds.opmlExport:false}")
+    protected boolean opmlExport;
+
+    @GetMapping("api/opml")
+    public void exportOpml(HttpServletResponse response) throws IOException {
+        if(!opmlExport){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/x-opml;charset=UTF-8");
+        response.getWriter().print(FeedsOpml.export(feedsConfigService.getFeedsConfigIndex().getConfig()));
+    }
+}
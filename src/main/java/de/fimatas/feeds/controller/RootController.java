@@ -3,10 +3,12 @@ package de.fimatas.feeds.controller;
 import de.fimatas.feeds.model.FeedsCache;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 
 @Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RootController {
 
     @Value("${feeds.rootRedirectUrl}")
@@ -20,7 +22,7 @@ public class RootController {
 
     @GetMapping("api/healthcheck")
     public void healthcheck(HttpServletResponse response) {
-        if(FeedsCache.getInstance().isNotValid()){
+        if(FeedsCache.isNotValidStatus()){
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }else{
             response.setStatus(HttpServletResponse.SC_OK);
@@ -1,68 +1,101 @@
 package de.fimatas.feeds.model;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import de.fimatas.feeds.util.FeedsCompression;
+import lombok.AccessLevel;
 import lombok.Data;
-import lombok.SneakyThrows;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.apachecommons.CommonsLog;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 @CommonsLog
 public class FeedsCache {
 
     private FeedsCache() {
         super();
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        readFromCacheFile();
+        readFromStorage();
+        isNotValid();
     }
 
-    public static synchronized FeedsCache getInstance() {
-        if (instance == null) {
-            try {
+    /**
+     * Called on every request. Once created, the instance is returned by a plain volatile read - no monitor, which
+     * would pin the carrier of a virtual thread while waiting.
+     */
+    public static FeedsCache getInstance() {
+        var current = instance;
+        if (current != null) {
+            return current;
+        }
+        INSTANCE_LOCK.lock();
+        try {
+            if (instance == null) {
+                if(storage == null){
+                    throw new IllegalStateException("No cache storage defined");
+                }
                 instance = new FeedsCache();
-            }catch (Throwable t){
-                instance = null;
-                throw t;
             }
+            return instance;
+        } finally {
+            INSTANCE_LOCK.unlock();
         }
-        return instance;
     }
 
-    private static FeedsCache instance;
-    private FeedsCacheRoot cache = null;
-    private final ObjectMapper objectMapper;
-    private boolean readError = false;
-    private boolean writeError = false;
-    private boolean cacheError = false;
+    /**
+     * Defines the storage, before the cache is read the first time. The configuration passes the one of
+     * feeds.cacheStorage.
+     */
+    public static void useStorage(FeedsCacheStorage feedsCacheStorage) {
+        INSTANCE_LOCK.lock();
+        try {
+            if(instance != null){
+                throw new IllegalStateException("Cache storage can't be changed after the cache was read");
+            }
+            storage = feedsCacheStorage;
+        } finally {
+            INSTANCE_LOCK.unlock();
+        }
+    }
 
+    private static final ReentrantLock INSTANCE_LOCK = new ReentrantLock();
+    private static volatile FeedsCache instance;
+    private static FeedsCacheStorage storage = null;
+    private volatile FeedsCacheRoot cache = null;
+    private volatile boolean readError = false;
+    private volatile boolean writeError = false;
+    private volatile boolean cacheError = false;
+    private volatile boolean storageAccessible = false;
 
-    @SneakyThrows
+    /**
+     * Full check, including the storage access. Called by the scheduler and the cache monitor.
+     */
     public boolean isNotValid() {
         if(readError || writeError || cacheError) {
             return true;
         }
-        var file = lookupCacheFile();
-        if(!file.exists()){
-            FileUtils.touch(file);
-        }
-        if(file.exists()){
-            if(!file.isFile() || !file.canRead() ){
-                log.error("Cache file is not file/readable");
+        var accessState = storage.checkAccess();
+        storageAccessible = accessState == FeedsCacheStorage.AccessState.OK;
+        switch (accessState) {
+            case NOT_READABLE -> {
                 readError = true;
                 return true;
             }
-            if(!file.canWrite()){
-                log.error("Cache file is not writable");
+            case NOT_WRITABLE -> {
                 writeError = true;
                 return true;
             }
@@ -75,15 +108,58 @@ public class FeedsCache {
         return false;
     }
 
-    public void updateGroupFeeds(FeedsCacheGroup group, Map<String, FeedsCache.FeedCacheEntry> newGroupFeeds) {
-        lookupGroup(group.groupId).setGroupFeeds(newGroupFeeds);
+    /**
+     * Reads only the status of the last full check, without touching the storage. For the request path.
+     */
+    public static boolean isNotValidStatus() {
+        var current = instance;
+        return current == null || current.readError || current.writeError || current.cacheError
+                || !current.storageAccessible || current.cache == null;
+    }
+
+    // copy on write, readers keep iterating over the previous map
+    public synchronized void updateFeed(FeedsCacheGroup group, FeedCacheEntry feedCacheEntry) {
+        var cacheGroup = lookupGroup(group.groupId);
+        var groupFeeds = new HashMap<>(cacheGroup.getGroupFeeds());
+        groupFeeds.put(feedCacheEntry.getKey(), feedCacheEntry);
+        cacheGroup.setGroupFeeds(groupFeeds);
+    }
+
+    // replaces the entry only if it wasn't refreshed in the meantime
+    public synchronized boolean replaceFeed(FeedsCacheGroup group, FeedCacheEntry expected, FeedCacheEntry replacement) {
+        var cacheGroup = lookupGroup(group.groupId);
+        if(cacheGroup == null || cacheGroup.getGroupFeeds().get(expected.getKey()) != expected){
+            return false;
+        }
+        updateFeed(cacheGroup, replacement);
+        return true;
+    }
+
+    public synchronized boolean removeFeed(FeedsCacheGroup group, String key) {
+        var cacheGroup = lookupGroup(group.groupId);
+        if(cacheGroup == null || !cacheGroup.getGroupFeeds().containsKey(key)){
+            return false;
+        }
+        var groupFeeds = new HashMap<>(cacheGroup.getGroupFeeds());
+        groupFeeds.remove(key);
+        cacheGroup.setGroupFeeds(groupFeeds);
+        return true;
+    }
+
+    public synchronized void retainGroupFeeds(FeedsCacheGroup group, Set<String> keys) {
+        var cacheGroup = lookupGroup(group.groupId);
+        if(!keys.containsAll(cacheGroup.getGroupFeeds().keySet())){
+            var groupFeeds = new HashMap<>(cacheGroup.getGroupFeeds());
+            groupFeeds.keySet().retainAll(keys);
+            cacheGroup.setGroupFeeds(groupFeeds);
+        }
     }
 
     public FeedsCacheGroup lookupGroup(String groupId) {
         return cache.getCacheGroups().stream().filter(g -> g.groupId.equals(groupId)).findFirst().orElse(null);
     }
 
-    public FeedsCacheGroup defineGroup(String groupId) {
+    public synchronized FeedsCacheGroup defineGroup(String groupId) {
         var existingGroup = lookupGroup(groupId);
         if(existingGroup!=null){
             return existingGroup;
@@ -103,49 +179,110 @@ public class FeedsCache {
         return null;
     }
 
-    private synchronized void readFromCacheFile() {
-        var file = lookupCacheFile();
+    private synchronized void readFromStorage() {
         if(cache != null){
             cache = null;
             cacheError = true;
             throw new RuntimeException("Cache object already existed!");
         }
-        if(file.exists() && file.length() > 0){
-            try {
-                cache = objectMapper.readValue(file, FeedsCacheRoot.class);
-            } catch (Throwable t) {
-                cache = null;
-                readError = true;
-                throw new RuntimeException("Cache could not be read", t);
-            }
+        FeedsCacheRoot storedCache;
+        try {
+            storedCache = storage.read();
+        } catch (Throwable t) {
+            cache = null;
+            readError = true;
+            throw new RuntimeException("Cache could not be read", t);
+        }
+        if(storedCache != null){
+            cache = storedCache;
         }else {
             cache = new FeedsCacheRoot();
-            writeToCacheFile();
+            writeToStorage();
+        }
+    }
+
+    /**
+     * Replaces the cache with the stored one, if another instance has written a newer generation since the last
+     * read/write. Groups of an unchanged generation are taken over from the current cache instead of being read again.
+     */
+    public synchronized void reloadFromStorage() {
+        var storedGeneration = storage.generation();
+        if(storedGeneration < 0 || cache == null || storedGeneration == cache.getGeneration()){
+            return;
+        }
+        try {
+            var storedCache = storage.reload(cache);
+            if(storedCache != null){
+                cache = storedCache;
+                log.info("cache reloaded from storage - generation " + storedCache.getGeneration());
+            }
+        } catch (Throwable t) {
+            log.warn("cache could not be reloaded from storage: " + t.getMessage());
         }
     }
 
-    public synchronized void writeToCacheFile() {
+    public synchronized void writeToStorage() {
         if(cache == null){
             cacheError = true;
             throw new RuntimeException("Cache object is null!");
         }
-        var file = lookupCacheFile();
         try {
-            var json = objectMapper.writeValueAsString(cache);
-            Files.writeString(file.toPath(), json);
+            var generation = nextGeneration();
+            cache.getCacheGroups().forEach(group -> group.setGeneration(generation));
+            storage.write(cache);
         } catch (Throwable t) {
             writeError = true;
             throw new RuntimeException("Cache could not be written", t);
         }
     }
 
-    public static void setExceptionTimestampAndWriteToFile() {
+    public synchronized void writeGroupsToStorage(Collection<FeedsCacheGroup> groups) {
+        if(cache == null){
+            cacheError = true;
+            throw new RuntimeException("Cache object is null!");
+        }
+        try {
+            var generation = nextGeneration();
+            groups.forEach(group -> group.setGeneration(generation));
+            storage.writeGroups(cache, groups);
+        } catch (Throwable t) {
+            writeError = true;
+            throw new RuntimeException("Cache groups could not be written", t);
+        }
+    }
+
+    public boolean isIncrementalStorage() {
+        return storage.isIncremental();
+    }
+
+    public synchronized void writeFeedToStorage(FeedsCacheGroup group, FeedCacheEntry feedCacheEntry) {
+        if(cache == null){
+            cacheError = true;
+            throw new RuntimeException("Cache object is null!");
+        }
+        try {
+            group.setGeneration(nextGeneration());
+            storage.writeFeed(cache, group, feedCacheEntry);
+        } catch (Throwable t) {
+            writeError = true;
+            throw new RuntimeException("Cache feed could not be written", t);
+        }
+    }
+
+    // above the stored one as well, in case another instance has written since the last reload
+    private long nextGeneration() {
+        var generation = Math.max(cache.getGeneration(), storage.generation()) + 1;
+        cache.setGeneration(generation);
+        return generation;
+    }
+
+    public static void setExceptionTimestampAndWriteToStorage() {
         if(instance != null && instance.cache != null) {
             instance.cache.setLastException(LocalDateTime.now());
             try {
-                instance.writeToCacheFile();
+                instance.writeToStorage();
             } catch (Throwable t) {
-                log.debug("could not save setExceptionTimestampAndWriteToFile");
+                log.debug("could not save setExceptionTimestampAndWriteToStorage");
             }
         }
     }
@@ -155,13 +292,42 @@ public class FeedsCache {
     }
 
     public static File lookupCacheFile(){
+        return lookupCacheFile("json");
+    }
+
+    public static File lookupCacheFile(String extension){
         var profile = System.getProperty("active.profile", "");
-        return Path.of(System.getProperty("user.home") + "/Documents/config/feeds/cache" + profile +".json").toFile();
+        return Path.of(System.getProperty("user.home") + "/Documents/config/feeds/cache" + profile + "." + extension).toFile();
+    }
+
+    /**
+     * Called on shutdown, after the last write.
+     */
+    public static void closeStorage() {
+        INSTANCE_LOCK.lock();
+        try {
+            var current = instance;
+            if(storage == null){
+                return;
+            }
+            if(current == null){
+                storage.close();
+                return;
+            }
+            // waits for a running write
+            synchronized (current) {
+                storage.close();
+            }
+        } finally {
+            INSTANCE_LOCK.unlock();
+        }
     }
 
     public static void destroyCache() {
         assert System.getProperty("active.profile", "").equals("test");
-        FileUtils.deleteQuietly(lookupCacheFile());
+        if(storage != null){
+            storage.destroy();
+        }
         instance = null;
     }
 
@@ -172,36 +338,128 @@ public class FeedsCache {
         }
     }
 
+    /**
+     * The generation is written first, so it can be read without parsing the whole cache. Every write increments it,
+     * and stamps the written groups.
+     */
     @Data
+    @JsonPropertyOrder({"generation", "lastException", "cacheGroups"})
     public static class FeedsCacheRoot {
+        private volatile long generation = 0;
         private LocalDateTime lastException = null;
-        private List<FeedsCacheGroup> cacheGroups = new LinkedList<>();
+        private List<FeedsCacheGroup> cacheGroups = new CopyOnWriteArrayList<>();
+
+        public void setCacheGroups(List<FeedsCacheGroup> cacheGroups) {
+            this.cacheGroups = new CopyOnWriteArrayList<>(cacheGroups);
+        }
     }
 
     @Data
+    @JsonPropertyOrder({"groupId", "generation", "lastRefreshMethodCall", "groupFeeds"})
     public static class FeedsCacheGroup {
         private String groupId;
-        private LocalDateTime lastRefreshMethodCall = null;
-        private Map<String, FeedCacheEntry> groupFeeds = new HashMap<>();
+        private volatile long generation = 0;
+        private volatile LocalDateTime lastRefreshMethodCall = null;
+        private volatile Map<String, FeedCacheEntry> groupFeeds = new HashMap<>();
     }
 
     @Data
     public static class FeedCacheEntry {
 
         private String key;
-        private String content;
+        private byte[] contentDeflated;
+        private byte[] rawContentDeflated;
         private int refreshErrorCounter;
         private LocalDateTime lastRefresh;
         private String headerLastModified;
         private String headerContentType;
         private TtlInfo ttl;
+        private LocalDateTime latestItemPublished;
+        private Duration itemInterval;
+        private int unchangedRefreshCounter;
+
+        @JsonIgnore
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private transient volatile FeedsItemIndex itemIndex;
+
+        // decompressed on every read, the cache itself only holds the deflated bytes
+        @JsonIgnore
+        public String getContent(){
+            return FeedsCompression.inflate(contentDeflated);
+        }
+
+        // 'content' is still accepted from cache files written before compression
+        @JsonProperty(value = "content", access = JsonProperty.Access.WRITE_ONLY)
+        public void setContent(String content){
+            contentDeflated = FeedsCompression.deflate(content);
+        }
+
+        // the unfiltered upstream body, to apply changed filters without downloading again
+        @JsonIgnore
+        public String getRawContent(){
+            return FeedsCompression.inflate(rawContentDeflated);
+        }
+
+        @JsonIgnore
+        public void setRawContent(String rawContent){
+            rawContentDeflated = FeedsCompression.deflate(rawContent);
+        }
+
+        // built on first use and again whenever the content was replaced
+        @JsonIgnore
+        public FeedsItemIndex getItemIndex(){
+            var index = itemIndex;
+            if(index == null || !index.isIndexOf(contentDeflated)){
+                index = FeedsItemIndex.of(contentDeflated);
+                itemIndex = index;
+            }
+            return index;
+        }
+
+        public FeedCacheEntry withContent(String content){
+            var copy = new FeedCacheEntry();
+            copy.key = key;
+            copy.setContent(content);
+            copy.rawContentDeflated = rawContentDeflated;
+            copy.refreshErrorCounter = refreshErrorCounter;
+            copy.lastRefresh = lastRefresh;
+            copy.headerLastModified = headerLastModified;
+            copy.headerContentType = headerContentType;
+            copy.ttl = ttl;
+            copy.latestItemPublished = latestItemPublished;
+            copy.itemInterval = itemInterval;
+            copy.unchangedRefreshCounter = unchangedRefreshCounter;
+            return copy;
+        }
 
         public void increaseRefreshErrorCounter(){
             refreshErrorCounter++;
         }
 
         public boolean hasActualContent(){
-            return refreshErrorCounter < 10 && lastRefresh.isAfter(LocalDateTime.now().minusDays(1)) && content != null;
+            return getFreshness() != Freshness.EXPIRED;
         }
+
+        @JsonIgnore
+        public Freshness getFreshness(){
+            var now = LocalDateTime.now();
+            if(refreshErrorCounter >= 10 || !lastRefresh.isAfter(now.minusDays(1)) || contentDeflated == null){
+                return Freshness.EXPIRED;
+            }
+            if(refreshErrorCounter > 0 || ttl == null || !lastRefresh.plus(ttl.getTtl()).isAfter(now)){
+                return Freshness.STALE;
+            }
+            return Freshness.FRESH;
+        }
+    }
+
+    /**
+     * FRESH within its TTL, STALE servable but due for revalidation, EXPIRED not servable anymore.
+     */
+    public enum Freshness {
+        FRESH, STALE, EXPIRED
     }
 }
@@ -0,0 +1,60 @@
+package de.fimatas.feeds.model;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FeedsCacheStorage {
+
+    /**
+     * @return the stored cache, or null if nothing was stored yet
+     */
+    FeedsCache.FeedsCacheRoot read();
+
+    void write(FeedsCache.FeedsCacheRoot root);
+
+    /**
+     * Stores only the given groups. Backends without random access fall back to writing the whole cache.
+     */
+    default void writeGroups(FeedsCache.FeedsCacheRoot root, Collection<FeedsCache.FeedsCacheGroup> groups) {
+        write(root);
+    }
+
+    /**
+     * True if single feeds can be stored without rewriting the whole cache, so every refreshed feed is stored at once.
+     */
+    default boolean isIncremental() {
+        return false;
+    }
+
+    default void writeFeed(FeedsCache.FeedsCacheRoot root, FeedsCache.FeedsCacheGroup group, FeedsCache.FeedCacheEntry feedCacheEntry) {
+        writeGroups(root, List.of(group));
+    }
+
+    /**
+     * @return generation of the stored cache, or -1 if the backend can't tell
+     */
+    default long generation() {
+        return -1;
+    }
+
+    /**
+     * Reads the stored cache again. Backends may take over the groups of the current cache whose generation is unchanged.
+     */
+    default FeedsCache.FeedsCacheRoot reload(FeedsCache.FeedsCacheRoot current) {
+        return read();
+    }
+
+    AccessState checkAccess();
+
+    /**
+     * Releases the backend on shutdown, e.g. flushes and unlocks a store file. Nothing can be read or written afterwards.
+     */
+    default void close() {
+    }
+
+    void destroy();
+
+    enum AccessState {
+        OK, NOT_READABLE, NOT_WRITABLE
+    }
+}
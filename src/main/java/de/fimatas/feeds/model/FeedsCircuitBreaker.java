@@ -2,6 +2,18 @@ package de.fimatas.feeds.model;
 
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 
+import java.util.Map;
+
 public interface FeedsCircuitBreaker {
     CircuitBreaker getCircuitBreaker(FeedsConfig.FeedConfig feedConfig);
+
+    default CircuitBreaker getCircuitBreaker(String key) {
+        var feedConfig = new FeedsConfig.FeedConfig();
+        feedConfig.setKey(key);
+        return getCircuitBreaker(feedConfig);
+    }
+
+    default Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Map.of();
+    }
 }
@@ -0,0 +1,31 @@
+package de.fimatas.feeds.model;
+
+import lombok.Getter;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Structural difference between two configs, by feed key. A feed whose url or group changed is removed from its
+ * previous group and added to the new one. Feeds with changed filters keep url and group.
+ */
+@Getter
+public class FeedsConfigDiff {
+
+    private final List<FeedChange> added = new LinkedList<>();
+    private final List<FeedChange> removed = new LinkedList<>();
+    // includes the feeds of an unchanged filter, if the external url in their description changed
+    private final List<FeedChange> filtersChanged = new LinkedList<>();
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && filtersChanged.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + added.size() + ", removed: " + removed.size() + ", filters changed: " + filtersChanged.size();
+    }
+
+    public record FeedChange(FeedsConfig.FeedsGroup group, FeedsConfig.FeedConfig feedConfig) {
+    }
+}
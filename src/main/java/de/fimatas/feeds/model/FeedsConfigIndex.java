@@ -0,0 +1,85 @@
+package de.fimatas.feeds.model;
+
+import lombok.Getter;
+import lombok.extern.apachecommons.CommonsLog;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Read-only index of a loaded config with constant time lookups by group id, feed key and url host. Built once per
+ * (re)load and replaced as a whole, never updated. If a feed key is configured twice, the first one wins.
+ */
+@CommonsLog
+public class FeedsConfigIndex {
+
+    @Getter
+    private final FeedsConfig config;
+
+    private final Map<String, FeedsConfig.FeedsGroup> groupsById;
+    private final Map<String, IndexedFeed> feedsByKey;
+    private final Map<String, List<IndexedFeed>> feedsByHost;
+
+    private FeedsConfigIndex(FeedsConfig config) {
+        this.config = config;
+        var groups = new LinkedHashMap<String, FeedsConfig.FeedsGroup>();
+        var feeds = new LinkedHashMap<String, IndexedFeed>();
+        var hosts = new HashMap<String, List<IndexedFeed>>();
+        for(var group : config.getGroups()){
+            if(groups.putIfAbsent(group.getGroupId(), group) != null){
+                log.warn("group configured twice: " + group.getGroupId());
+            }
+            for(var feedConfig : group.getGroupFeeds()){
+                var indexedFeed = new IndexedFeed(group, feedConfig);
+                if(feeds.putIfAbsent(feedConfig.getKey(), indexedFeed) != null){
+                    log.warn("feed key configured twice: " + feedConfig.getKey());
+                    continue;
+                }
+                hosts.computeIfAbsent(lookupHost(feedConfig.getUrl()), h -> new ArrayList<>()).add(indexedFeed);
+            }
+        }
+        this.groupsById = Collections.unmodifiableMap(groups);
+        this.feedsByKey = Collections.unmodifiableMap(feeds);
+        hosts.replaceAll((host, hostFeeds) -> List.copyOf(hostFeeds));
+        this.feedsByHost = Collections.unmodifiableMap(hosts);
+    }
+
+    public static FeedsConfigIndex of(FeedsConfig config) {
+        return new FeedsConfigIndex(config);
+    }
+
+    public List<FeedsConfig.FeedsGroup> getGroups() {
+        return config.getGroups();
+    }
+
+    public FeedsConfig.FeedsGroup lookupGroup(String groupId) {
+        return groupsById.get(groupId);
+    }
+
+    public IndexedFeed lookupFeed(String key) {
+        return feedsByKey.get(key);
+    }
+
+    public List<IndexedFeed> lookupFeedsByHost(String host) {
+        return feedsByHost.getOrDefault(host, List.of());
+    }
+
+    public Collection<IndexedFeed> getFeeds() {
+        return feedsByKey.values();
+    }
+
+    public static String lookupHost(String url) {
+        if(url == null){
+            return "";
+        }
+        try {
+            var host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    public record IndexedFeed(FeedsConfig.FeedsGroup group, FeedsConfig.FeedConfig feedConfig) {
+    }
+}
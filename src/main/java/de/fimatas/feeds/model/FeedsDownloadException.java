@@ -0,0 +1,31 @@
+package de.fimatas.feeds.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class FeedsDownloadException extends RuntimeException {
+
+    public enum ErrorClass {
+        DNS, TIMEOUT, CONNECTION, CLIENT_ERROR, SERVER_ERROR, RATE_LIMITED, OTHER
+    }
+
+    private final ErrorClass errorClass;
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public FeedsDownloadException(String message, ErrorClass errorClass, int statusCode, Duration retryAfter) {
+        super(message);
+        this.errorClass = errorClass;
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public FeedsDownloadException(String message, ErrorClass errorClass, Throwable cause) {
+        super(message, cause);
+        this.errorClass = errorClass;
+        this.statusCode = -1;
+        this.retryAfter = null;
+    }
+}
@@ -1,16 +1,28 @@
 package de.fimatas.feeds.model;
 
-import lombok.AllArgsConstructor;
+import com.rometools.rome.feed.WireFeed;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.util.Map;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class FeedsHttpClientResponse {
     private Map<String, String> headers;
     private int statusCode;
     private String body;
+
+    // parsed once and shared by all feeds fanned out from this response
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private WireFeed parsedFeed;
+
+    public FeedsHttpClientResponse(Map<String, String> headers, int statusCode, String body) {
+        this.headers = headers;
+        this.statusCode = statusCode;
+        this.body = body;
+    }
 }
@@ -0,0 +1,206 @@
+package de.fimatas.feeds.model;
+
+import de.fimatas.feeds.util.FeedsCompression;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Index of a served feed body: a checksum and the position, pubDate and identity of every item. Built once per
+ * content, it serves ETags and RFC 3229 'feed' deltas (only the items published after a client's version).
+ */
+public class FeedsItemIndex {
+
+    private static final String ITEM_START = "<item>";
+    private static final String ITEM_END = "</item>";
+    private static final String PUB_DATE_START = "<pubDate>";
+    private static final String PUB_DATE_END = "</pubDate>";
+
+    private final byte[] source;
+
+    @Getter
+    private final String checksum;
+
+    // start and end (exclusive) of every item in the inflated content
+    private final List<int[]> itemSpans;
+    private final List<Instant> itemsPublished;
+    private final List<Long> itemIdentities;
+
+    /**
+     * Newest pubDate, null if the feed has no items or any item has no (parsable) pubDate - deltas aren't possible then.
+     */
+    @Getter
+    private final Instant newestPublished;
+
+    private FeedsItemIndex(byte[] contentDeflated) {
+        this.source = contentDeflated;
+        this.itemSpans = new ArrayList<>();
+        this.itemsPublished = new ArrayList<>();
+        this.itemIdentities = new ArrayList<>();
+        if(contentDeflated == null){
+            this.checksum = "";
+            this.newestPublished = null;
+            return;
+        }
+        var crc = new CRC32C();
+        crc.update(contentDeflated);
+        this.checksum = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(contentDeflated.length);
+
+        // the content is written by rome, which escapes text - so item tags can't occur inside of values
+        var content = FeedsCompression.inflate(contentDeflated);
+        Instant newest = null;
+        var dated = true;
+        int start = content.indexOf(ITEM_START);
+        while (start >= 0) {
+            int end = content.indexOf(ITEM_END, start);
+            if(end < 0){
+                break;
+            }
+            end += ITEM_END.length();
+            var published = parsePubDate(content, start, end);
+            itemSpans.add(new int[]{start, end});
+            itemsPublished.add(published);
+            itemIdentities.add(crc(new IndexedItem(published, content.substring(start, end)).identity()));
+            if(published == null){
+                dated = false;
+            }else if(newest == null || published.isAfter(newest)){
+                newest = published;
+            }
+            start = content.indexOf(ITEM_START, end);
+        }
+        this.newestPublished = dated ? newest : null;
+    }
+
+    public static FeedsItemIndex of(byte[] contentDeflated) {
+        return new FeedsItemIndex(contentDeflated);
+    }
+
+    public boolean isIndexOf(byte[] contentDeflated) {
+        return source == contentDeflated;
+    }
+
+    public int size() {
+        return itemSpans.size();
+    }
+
+    public long countPublishedAfter(Instant since) {
+        return itemsPublished.stream().filter(published -> published != null && published.isAfter(since)).count();
+    }
+
+    /**
+     * Hash of the identities of all items published until 'until' (inclusive), independent of their order. A
+     * client holding these items gets only the newer ones as delta; an item added with an older pubDate changes it.
+     */
+    public String hashItemsPublishedUntil(Instant until) {
+        var identities = new ArrayList<Long>();
+        for(int i = 0; i < itemIdentities.size(); i++){
+            var published = itemsPublished.get(i);
+            if(published != null && !published.isAfter(until)){
+                identities.add(itemIdentities.get(i));
+            }
+        }
+        identities.sort(null);
+        var crc = new CRC32C();
+        var buffer = ByteBuffer.allocate(Long.BYTES);
+        identities.forEach(identity -> {
+            buffer.clear();
+            crc.update(buffer.putLong(identity).flip());
+        });
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * The content with only the items published after 'since'; the channel elements stay as they are.
+     */
+    public String retainPublishedAfter(String content, Instant since) {
+        if(itemSpans.isEmpty()){
+            return content;
+        }
+        var delta = new StringBuilder(content.length());
+        delta.append(content, 0, itemSpans.get(0)[0]);
+        for(int i = 0; i < itemSpans.size(); i++){
+            var published = itemsPublished.get(i);
+            if(published != null && published.isAfter(since)){
+                delta.append(content, itemSpans.get(i)[0], itemSpans.get(i)[1]);
+            }
+        }
+        delta.append(content, itemSpans.get(itemSpans.size() - 1)[1], content.length());
+        return delta.toString();
+    }
+
+    /**
+     * The items of the content, in document order, with their pubDate (null if missing).
+     */
+    public List<IndexedItem> extractItems(String content) {
+        var items = new ArrayList<IndexedItem>(itemSpans.size());
+        for(int i = 0; i < itemSpans.size(); i++){
+            items.add(new IndexedItem(itemsPublished.get(i), content.substring(itemSpans.get(i)[0], itemSpans.get(i)[1])));
+        }
+        return items;
+    }
+
+    private static long crc(String value) {
+        var crc = new CRC32C();
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static Instant parsePubDate(String content, int itemStart, int itemEnd) {
+        int start = content.indexOf(PUB_DATE_START, itemStart);
+        if(start < 0 || start > itemEnd){
+            return null;
+        }
+        start += PUB_DATE_START.length();
+        int end = content.indexOf(PUB_DATE_END, start);
+        if(end < 0 || end > itemEnd){
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(content.substring(start, end).trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public record IndexedItem(Instant published, String xml) {
+
+        /**
+         * What identifies the item across refreshes: its guid, else its link, else the whole item - a feed may
+         * change an item's text or date without it being a new item.
+         */
+        public String identity() {
+            var guid = elementText(xml, "guid");
+            if(guid != null){
+                return "guid:" + guid;
+            }
+            var link = elementText(xml, "link");
+            return link != null ? "link:" + link : xml;
+        }
+
+        // attributes are allowed (e.g. isPermaLink), nested elements aren't expected
+        private static String elementText(String item, String tag) {
+            int start = item.indexOf("<" + tag + ">");
+            if(start < 0){
+                start = item.indexOf("<" + tag + " ");
+            }
+            if(start < 0){
+                return null;
+            }
+            start = item.indexOf('>', start) + 1;
+            int end = item.indexOf("</" + tag + ">", start);
+            if(start == 0 || end < 0){
+                return null;
+            }
+            var text = item.substring(start, end).trim();
+            return text.isEmpty() ? null : text;
+        }
+    }
+}
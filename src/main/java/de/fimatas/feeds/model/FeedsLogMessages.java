@@ -8,6 +8,8 @@ public class FeedsLogMessages {
     public static final String CACHE_IS_NOT_VALID = "cache is not valid!";
     public static final String SKIPPING_REFRESH_CACHE = "skipping refresh (cache)";
     public static final String SKIPPING_REFRESH_METHOD_CALL = "skipping refresh (method call)";
+    public static final String SKIPPING_REFRESH_FOLLOWER = "skipping refresh (follower)";
+    public static final String SKIPPING_REFRESH_BUDGET = "skipping refresh (run budget)";
     public static final String NEW_OVERALL_DELAY = "new overall delay";
     public static final String STARTUP_DELAY = "startup delay...";
 
@@ -0,0 +1,16 @@
+package de.fimatas.feeds.model;
+
+/**
+ * A download that was not started because of a local limit, e.g. no free download permit. The upstream did not
+ * fail, so circuit breaker, backoff and the error counter of the cached entry are left untouched.
+ */
+public class FeedsRefreshThrottledException extends RuntimeException {
+
+    public FeedsRefreshThrottledException(String message) {
+        super(message);
+    }
+
+    public FeedsRefreshThrottledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
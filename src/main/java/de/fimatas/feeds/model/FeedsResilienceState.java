@@ -0,0 +1,23 @@
+package de.fimatas.feeds.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+public class FeedsResilienceState {
+
+    private Map<String, FeedState> feeds = new HashMap<>();
+
+    @Data
+    public static class FeedState {
+        private String circuitBreakerState;
+        private int failedCalls;
+        private int successfulCalls;
+        private int backoffFailures;
+        private FeedsDownloadException.ErrorClass backoffErrorClass;
+        private LocalDateTime retryNotBefore;
+    }
+}
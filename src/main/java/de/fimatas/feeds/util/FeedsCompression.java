@@ -0,0 +1,67 @@
+package de.fimatas.feeds.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class FeedsCompression {
+
+    public static final String CONTENT_ENCODING = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // zlib format (RFC 1950), which is what HTTP calls 'deflate' - so stored bytes can be sent to clients as they are
+    public static byte[] deflate(String content) {
+        if (content == null) {
+            return null;
+        }
+        var input = content.getBytes(StandardCharsets.UTF_8);
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            var outputStream = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            var buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String inflate(byte[] compressed) {
+        if (compressed == null) {
+            return null;
+        }
+        return new String(inflateToBytes(compressed), StandardCharsets.UTF_8);
+    }
+
+    public static byte[] inflateToBytes(byte[] compressed) {
+        if (compressed == null) {
+            return null;
+        }
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            var outputStream = new ByteArrayOutputStream(compressed.length * 4);
+            var buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("compressed content is truncated");
+                }
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("compressed content is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
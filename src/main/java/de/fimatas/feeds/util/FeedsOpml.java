@@ -0,0 +1,74 @@
+package de.fimatas.feeds.util;
+
+import de.fimatas.feeds.model.FeedsConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.input.sax.XMLReaders;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Reads and writes OPML subscription lists, as exported by feed readers. Folders become groups, nested folders are
+ * flattened into their top level folder.
+ */
+public class FeedsOpml {
+
+    public static List<Outline> parse(InputStream inputStream) throws JDOMException, IOException {
+        var saxBuilder = new SAXBuilder(XMLReaders.NONVALIDATING);
+        // no doctype, no external entities
+        saxBuilder.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        saxBuilder.setExpandEntities(false);
+        var root = saxBuilder.build(inputStream).getRootElement();
+        if(!root.getName().equalsIgnoreCase("opml") || root.getChild("body") == null){
+            throw new JDOMException("not an opml document");
+        }
+        var outlines = new LinkedList<Outline>();
+        collect(root.getChild("body").getChildren("outline"), null, outlines);
+        return outlines;
+    }
+
+    private static void collect(List<Element> elements, String group, List<Outline> outlines) {
+        for(var element : elements){
+            var title = StringUtils.trimToNull(StringUtils.defaultIfBlank(element.getAttributeValue("title"), element.getAttributeValue("text")));
+            var xmlUrl = StringUtils.trimToNull(element.getAttributeValue("xmlUrl"));
+            if(xmlUrl != null){
+                outlines.add(new Outline(group, title, xmlUrl));
+            }else{
+                collect(element.getChildren("outline"), group == null ? title : group, outlines);
+            }
+        }
+    }
+
+    public static String export(FeedsConfig feedsConfig) {
+        var body = new Element("body");
+        for(var group : feedsConfig.getGroups()){
+            var groupOutline = new Element("outline").setAttribute("text", group.getGroupId()).setAttribute("title", group.getGroupId());
+            for(var feedConfig : group.getGroupFeeds()){
+                groupOutline.addContent(new Element("outline")
+                        .setAttribute("type", "rss")
+                        .setAttribute("text", StringUtils.defaultString(feedConfig.getName(), feedConfig.getKey()))
+                        .setAttribute("title", StringUtils.defaultString(feedConfig.getName(), feedConfig.getKey()))
+                        .setAttribute("xmlUrl", feedConfig.getUrl()));
+            }
+            body.addContent(groupOutline);
+        }
+        var opml = new Element("opml").setAttribute("version", "2.0")
+                .addContent(new Element("head").addContent(new Element("title").setText("feeds")))
+                .addContent(body);
+        return new XMLOutputter(Format.getPrettyFormat()).outputString(new Document(opml));
+    }
+
+    /**
+     * One subscription; group is the title of its top level folder, null outside of any folder.
+     */
+    public record Outline(String group, String title, String xmlUrl) {
+    }
+}
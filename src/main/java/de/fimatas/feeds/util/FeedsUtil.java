@@ -1,10 +1,16 @@
 package de.fimatas.feeds.util;
 
 import com.rometools.rome.feed.WireFeed;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.WireFeedInput;
+import de.fimatas.feeds.model.FeedsHttpClientResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
+import org.xml.sax.InputSource;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 public class FeedsUtil {
@@ -13,6 +19,19 @@ public class FeedsUtil {
         return getForeignMarkupElement(wireFeed, name).map(e -> StringUtils.trimToNull(e.getValue())).orElse(null);
     }
 
+    /**
+     * Parses the body of the response only once, later calls get the same instance.
+     */
+    public static WireFeed parseFeed(FeedsHttpClientResponse response) throws FeedException {
+        synchronized (response) {
+            if(response.getParsedFeed() == null){
+                response.setParsedFeed(new WireFeedInput()
+                        .build(new InputSource(new ByteArrayInputStream(response.getBody().getBytes(StandardCharsets.UTF_8)))));
+            }
+            return response.getParsedFeed();
+        }
+    }
+
     public static Element createElement(String name, String value, Namespace namespace) {
         Element element = new Element(name, namespace);
         element.setText(value);
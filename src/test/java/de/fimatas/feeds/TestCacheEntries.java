@@ -0,0 +1,31 @@
+package de.fimatas.feeds;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.TtlInfo;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Cache entries for tests.
+ */
+public class TestCacheEntries {
+
+    public static FeedsCache.FeedCacheEntry entry(String key, String content) {
+        return entry(key, content, LocalDateTime.now(), null);
+    }
+
+    /**
+     * Without TTL if ttl is null.
+     */
+    public static FeedsCache.FeedCacheEntry entry(String key, String content, LocalDateTime lastRefresh, Duration ttl) {
+        var entry = new FeedsCache.FeedCacheEntry();
+        entry.setKey(key);
+        entry.setContent(content);
+        entry.setLastRefresh(lastRefresh);
+        if(ttl != null){
+            entry.setTtl(new TtlInfo(ttl, "test"));
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,73 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsAdaptiveTtlTest {
+
+    private FeedsAdaptiveTtl feedsAdaptiveTtl;
+
+    private final LocalDateTime base = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @BeforeEach
+    void beforeEach() {
+        feedsAdaptiveTtl = new FeedsAdaptiveTtl();
+        feedsAdaptiveTtl.adaptiveTtl = true;
+    }
+
+    @Test
+    void firstRefreshEstimatedFromItems() {
+        var entry = new FeedsCache.FeedCacheEntry();
+        feedsAdaptiveTtl.updateItemStatistics(null, entry, List.of(base, base.plusHours(4), base.plusHours(8)));
+        assertEquals(Duration.ofHours(4), entry.getItemInterval());
+        assertEquals(base.plusHours(8), entry.getLatestItemPublished());
+        assertEquals(Duration.ofHours(2), feedsAdaptiveTtl.adaptiveTtl(entry).orElseThrow().getTtl());
+    }
+
+    @Test
+    void noItems() {
+        var entry = new FeedsCache.FeedCacheEntry();
+        feedsAdaptiveTtl.updateItemStatistics(null, entry, List.of());
+        assertTrue(feedsAdaptiveTtl.adaptiveTtl(entry).isEmpty());
+    }
+
+    @Test
+    void newItemsWeighted() {
+        var previous = new FeedsCache.FeedCacheEntry();
+        previous.setLatestItemPublished(base);
+        previous.setItemInterval(Duration.ofHours(10));
+        var entry = new FeedsCache.FeedCacheEntry();
+        feedsAdaptiveTtl.updateItemStatistics(previous, entry, List.of(base.minusHours(10), base, base.plusHours(20)));
+        assertEquals(Duration.ofHours(13), entry.getItemInterval());
+        assertEquals(base.plusHours(20), entry.getLatestItemPublished());
+        assertEquals(0, entry.getUnchangedRefreshCounter());
+    }
+
+    @Test
+    void backoffWithoutNewItems() {
+        var previous = new FeedsCache.FeedCacheEntry();
+        previous.setLatestItemPublished(base);
+        previous.setItemInterval(Duration.ofHours(1));
+        previous.setUnchangedRefreshCounter(2);
+        var entry = new FeedsCache.FeedCacheEntry();
+        feedsAdaptiveTtl.updateItemStatistics(previous, entry, List.of(base));
+        assertEquals(3, entry.getUnchangedRefreshCounter());
+        assertEquals(Duration.ofMinutes(120), feedsAdaptiveTtl.adaptiveTtl(entry).orElseThrow().getTtl());
+    }
+
+    @Test
+    void bounds() {
+        var entry = new FeedsCache.FeedCacheEntry();
+        entry.setItemInterval(Duration.ofMinutes(1));
+        assertEquals(feedsAdaptiveTtl.adaptiveTtlMin, feedsAdaptiveTtl.adaptiveTtl(entry).orElseThrow().getTtl());
+        entry.setItemInterval(Duration.ofDays(30));
+        assertEquals(feedsAdaptiveTtl.adaptiveTtlMax, feedsAdaptiveTtl.adaptiveTtl(entry).orElseThrow().getTtl());
+    }
+}
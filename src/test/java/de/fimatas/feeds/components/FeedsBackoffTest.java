@@ -0,0 +1,99 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsDownloadException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsBackoffTest {
+
+    private static final String KEY = "key";
+
+    private final LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private FeedsBackoff feedsBackoff;
+
+    @BeforeEach
+    void beforeEach() {
+        feedsBackoff = new FeedsBackoff(new FeedsTimer() {
+            @Override
+            public LocalDateTime localDateTimeNow() {
+                return now;
+            }
+        });
+        feedsBackoff.adaptiveBackoff = true;
+    }
+
+    @Test
+    void disabled() {
+        feedsBackoff.adaptiveBackoff = false;
+        feedsBackoff.recordFailure(KEY, serverError());
+        assertFalse(feedsBackoff.isBackingOff(KEY));
+        assertTrue(feedsBackoff.retryNotBefore(KEY).isEmpty());
+    }
+
+    @Test
+    void exponentialWithJitter() {
+        feedsBackoff.recordFailure(KEY, serverError());
+        assertBetween(Duration.ofSeconds(96), Duration.ofSeconds(144), feedsBackoff.remaining(KEY));
+        feedsBackoff.recordFailure(KEY, serverError());
+        feedsBackoff.recordFailure(KEY, serverError());
+        assertBetween(Duration.ofSeconds(384), Duration.ofSeconds(576), feedsBackoff.remaining(KEY));
+        assertTrue(feedsBackoff.isBackingOff(KEY));
+    }
+
+    @Test
+    void cappedAtMax() {
+        for (int i = 0; i < 40; i++) {
+            feedsBackoff.recordFailure(KEY, new FeedsDownloadException("dns", FeedsDownloadException.ErrorClass.DNS, null));
+        }
+        assertBetween(Duration.ofHours(24).multipliedBy(8).dividedBy(10), Duration.ofHours(24).multipliedBy(12).dividedBy(10), feedsBackoff.remaining(KEY));
+    }
+
+    @Test
+    void retryAfterIsLowerBound() {
+        feedsBackoff.recordFailure(KEY, new FeedsDownloadException("HTTP Status Code: 429",
+                FeedsDownloadException.ErrorClass.RATE_LIMITED, 429, Duration.ofHours(3)));
+        assertEquals(Duration.ofHours(3), feedsBackoff.remaining(KEY));
+    }
+
+    @Test
+    void successResets() {
+        feedsBackoff.recordFailure(KEY, serverError());
+        feedsBackoff.recordSuccess(KEY);
+        assertFalse(feedsBackoff.isBackingOff(KEY));
+        feedsBackoff.recordFailure(KEY, serverError());
+        assertBetween(Duration.ofSeconds(96), Duration.ofSeconds(144), feedsBackoff.remaining(KEY));
+    }
+
+    @Test
+    void classify() {
+        assertEquals(FeedsDownloadException.ErrorClass.OTHER, FeedsBackoff.classify(new RuntimeException("processing")));
+        assertEquals(FeedsDownloadException.ErrorClass.TIMEOUT, FeedsBackoff.classify(
+                new RuntimeException(new FeedsDownloadException("timeout", FeedsDownloadException.ErrorClass.TIMEOUT, null))));
+    }
+
+    @Test
+    void circuitBreakerWaitsForBackoff() {
+        var feedConfig = new FeedsConfig.FeedConfig();
+        feedConfig.setKey(KEY);
+        var circuitBreaker = new FeedsDownloadCircuitBreaker(feedsBackoff).getCircuitBreaker(feedConfig);
+        feedsBackoff.recordFailure(KEY, new FeedsDownloadException("HTTP Status Code: 503",
+                FeedsDownloadException.ErrorClass.RATE_LIMITED, 503, Duration.ofHours(2)));
+        var wait = circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1);
+        assertEquals(Duration.ofHours(2).toMillis(), wait.longValue());
+    }
+
+    private static FeedsDownloadException serverError() {
+        return new FeedsDownloadException("HTTP Status Code: 500", FeedsDownloadException.ErrorClass.SERVER_ERROR, 500, null);
+    }
+
+    private static void assertBetween(Duration min, Duration max, Duration actual) {
+        assertTrue(actual.compareTo(min) >= 0 && actual.compareTo(max) <= 0, actual + " not in [" + min + ", " + max + "]");
+    }
+}
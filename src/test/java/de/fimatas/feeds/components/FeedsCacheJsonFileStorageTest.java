@@ -0,0 +1,86 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsCacheJsonFileStorageTest {
+
+    private FeedsCacheJsonFileStorage storage;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        System.setProperty("active.profile", "test");
+        FileUtils.forceMkdirParent(FeedsCache.lookupCacheFile());
+        storage = new FeedsCacheJsonFileStorage();
+        storage.destroy();
+    }
+
+    @AfterEach
+    void afterEach() {
+        storage.destroy();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void readEmpty() {
+        assertNull(storage.read());
+    }
+
+    @Test
+    void writeAndRead() {
+        storage.write(newRoot());
+        var root = storage.read();
+        assertNotNull(root.getLastException());
+        assertEquals(1, root.getCacheGroups().size());
+        assertEquals("group", root.getCacheGroups().get(0).getGroupId());
+        assertEquals("<rss>a</rss>", root.getCacheGroups().get(0).getGroupFeeds().get("a").getContent());
+        assertEquals("<rss>b</rss>", root.getCacheGroups().get(0).getGroupFeeds().get("b").getContent());
+    }
+
+    @Test
+    void generation() {
+        assertEquals(-1, storage.generation());
+        var root = newRoot();
+        root.setGeneration(5);
+        storage.write(root);
+        assertEquals(5, storage.generation());
+        assertEquals(5, storage.read().getGeneration());
+    }
+
+    @Test
+    void readWithCorruptEntry() throws Exception {
+        storage.write(newRoot());
+        var path = FeedsCache.lookupCacheFile().toPath();
+        var json = Files.readString(path);
+        Files.writeString(path, json.replaceFirst("\"lastRefresh\":\\[[^\\]]*\\]", "\"lastRefresh\":\"corrupt\""));
+        var groupFeeds = storage.read().getCacheGroups().get(0).getGroupFeeds();
+        assertEquals(1, groupFeeds.size());
+    }
+
+    @Test
+    void readCorruptFile() throws Exception {
+        Files.writeString(FeedsCache.lookupCacheFile().toPath(), "---");
+        assertThrows(Exception.class, () -> storage.read());
+    }
+
+    private static FeedsCache.FeedsCacheRoot newRoot() {
+        var root = new FeedsCache.FeedsCacheRoot();
+        root.setLastException(LocalDateTime.now());
+        var group = new FeedsCache.FeedsCacheGroup();
+        group.setGroupId("group");
+        group.setLastRefreshMethodCall(LocalDateTime.now());
+        group.getGroupFeeds().put("a", entry("a", "<rss>a</rss>"));
+        group.getGroupFeeds().put("b", entry("b", "<rss>b</rss>"));
+        root.getCacheGroups().add(group);
+        return root;
+    }
+}
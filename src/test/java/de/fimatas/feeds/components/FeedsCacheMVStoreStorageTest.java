@@ -0,0 +1,107 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsCacheMVStoreStorageTest {
+
+    private FeedsCacheMVStoreStorage storage;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        System.setProperty("active.profile", "test");
+        FileUtils.forceMkdirParent(FeedsCache.lookupCacheFile("mv.db"));
+        storage = new FeedsCacheMVStoreStorage();
+        storage.destroy();
+    }
+
+    @AfterEach
+    void afterEach() {
+        storage.destroy();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void readEmpty() {
+        assertNull(storage.read());
+    }
+
+    @Test
+    void writeCloseReopenAndRead() {
+        storage.write(newRoot());
+        storage.close();
+
+        storage = new FeedsCacheMVStoreStorage();
+        var root = storage.read();
+        assertNotNull(root.getLastException());
+        assertEquals(1, root.getCacheGroups().size());
+        assertEquals("group", root.getCacheGroups().get(0).getGroupId());
+        assertNotNull(root.getCacheGroups().get(0).getLastRefreshMethodCall());
+        assertEquals("<rss>a</rss>", root.getCacheGroups().get(0).getGroupFeeds().get("a").getContent());
+        assertEquals("<rss>b</rss>", root.getCacheGroups().get(0).getGroupFeeds().get("b").getContent());
+    }
+
+    @Test
+    void writeFeedCloseReopenAndRead() {
+        var root = newRoot();
+        storage.write(root);
+        var group = root.getCacheGroups().get(0);
+        storage.writeFeed(root, group, entry("a", "<rss>a</rss>").withContent("<rss>a2</rss>"));
+        storage.close();
+
+        storage = new FeedsCacheMVStoreStorage();
+        var groupFeeds = storage.read().getCacheGroups().get(0).getGroupFeeds();
+        assertEquals("<rss>a2</rss>", groupFeeds.get("a").getContent());
+        assertEquals("<rss>b</rss>", groupFeeds.get("b").getContent());
+    }
+
+    @Test
+    void writeGroupsRemovesNothingElse() {
+        var root = newRoot();
+        var other = new FeedsCache.FeedsCacheGroup();
+        other.setGroupId("other");
+        other.getGroupFeeds().put("c", entry("c", "<rss>c</rss>"));
+        root.getCacheGroups().add(other);
+        storage.write(root);
+        other.getGroupFeeds().put("c", entry("c", "<rss>c</rss>").withContent("<rss>c2</rss>"));
+        storage.writeGroups(root, List.of(other));
+        storage.close();
+
+        storage = new FeedsCacheMVStoreStorage();
+        var groups = storage.read().getCacheGroups();
+        assertEquals(2, groups.size());
+        var group = groups.stream().filter(g -> g.getGroupId().equals("group")).findFirst().orElseThrow();
+        var otherGroup = groups.stream().filter(g -> g.getGroupId().equals("other")).findFirst().orElseThrow();
+        assertEquals(2, group.getGroupFeeds().size());
+        assertEquals("<rss>c2</rss>", otherGroup.getGroupFeeds().get("c").getContent());
+    }
+
+    @Test
+    void noWriteAfterClose() {
+        storage.write(newRoot());
+        storage.close();
+        assertThrows(IllegalStateException.class, () -> storage.write(newRoot()));
+        assertEquals(FeedsCacheMVStoreStorage.AccessState.NOT_READABLE, storage.checkAccess());
+    }
+
+    private static FeedsCache.FeedsCacheRoot newRoot() {
+        var root = new FeedsCache.FeedsCacheRoot();
+        root.setLastException(LocalDateTime.now());
+        var group = new FeedsCache.FeedsCacheGroup();
+        group.setGroupId("group");
+        group.setLastRefreshMethodCall(LocalDateTime.now());
+        group.getGroupFeeds().put("a", entry("a", "<rss>a</rss>"));
+        group.getGroupFeeds().put("b", entry("b", "<rss>b</rss>"));
+        root.getCacheGroups().add(group);
+        return root;
+    }
+}
@@ -0,0 +1,91 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsCacheStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsCacheMonitorTest {
+
+    private BlockingStorage storage;
+    private FeedsCacheMonitor feedsCacheMonitor;
+
+    @BeforeEach
+    void beforeEach() {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        storage = new BlockingStorage();
+        FeedsCache.useStorage(storage);
+        feedsCacheMonitor = new FeedsCacheMonitor();
+        feedsCacheMonitor.initialDelay = Duration.ZERO;
+        feedsCacheMonitor.cacheMonitorDelay = Duration.ofMillis(20);
+    }
+
+    @AfterEach
+    void afterEach() {
+        feedsCacheMonitor.shutdown();
+        storage.release.countDown();
+        FeedsCache.destroyCache();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void invalidStorageWhileRefreshRuns() throws Exception {
+        FeedsCache.getInstance();
+        assertFalse(FeedsCache.isNotValidStatus());
+
+        // a refresh holding the cache while it writes to the storage
+        storage.blockWrites = true;
+        var refresh = new Thread(() -> FeedsCache.getInstance().writeGroupsToStorage(List.of()));
+        refresh.start();
+        assertTrue(storage.writing.await(5, TimeUnit.SECONDS));
+
+        storage.accessState = FeedsCacheStorage.AccessState.NOT_WRITABLE;
+        feedsCacheMonitor.init();
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!FeedsCache.isNotValidStatus() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(FeedsCache.isNotValidStatus());
+        assertTrue(refresh.isAlive());
+
+        storage.release.countDown();
+        refresh.join(5000);
+        assertFalse(refresh.isAlive());
+    }
+
+    private static class BlockingStorage extends FeedsCacheMemoryStorage {
+
+        private volatile boolean blockWrites = false;
+        private volatile AccessState accessState = AccessState.OK;
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(FeedsCache.FeedsCacheRoot root) {
+            if(blockWrites){
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.write(root);
+        }
+
+        @Override
+        public AccessState checkAccess() {
+            return accessState;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.fimatas.feeds.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsConfigServiceTest {
+
+    private FeedsConfig previousConfig;
+    private FeedsConfig newConfig;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        previousConfig = readTestConfig();
+        newConfig = readTestConfig();
+    }
+
+    @Test
+    void unchangedConfig() {
+        assertTrue(diff().isEmpty());
+    }
+
+    @Test
+    void unchangedFilterPlansAreReused() {
+        var previousPlans = FeedsConfigService.compileFilterPlans(null, Map.of(), previousConfig);
+        newConfig.getLists().get(0).put("con2", List.of("content2", "content3"));
+        var newPlans = FeedsConfigService.compileFilterPlans(previousConfig, previousPlans, newConfig);
+        assertSame(previousPlans.get("example_G1B"), newPlans.get("example_G1B"));
+        assertEquals(List.of("title", "example"), newPlans.get("example_G1B").includes());
+        assertEquals(List.of("xyz", "zyx"), newPlans.get("example_G1B").excludes());
+    }
+
+    @Test
+    void changedListAffectsReferencingFeedsOnly() {
+        newConfig.getLists().get(0).put("all", List.of("title"));
+        assertEquals(List.of("example_G1B"), keys(diff().getFiltersChanged()));
+    }
+
+    @Test
+    void changedRefsAffectFeed() {
+        var feedConfig = newConfig.getGroups().get(0).getGroupFeeds().get(2);
+        feedConfig.setIncludeRefs(List.of("con2"));
+        assertEquals(List.of(feedConfig.getKey()), keys(diff().getFiltersChanged()));
+    }
+
+    @Test
+    void changedUrlIsRemovedAndAdded() {
+        var feedConfig = newConfig.getGroups().get(0).getGroupFeeds().get(1);
+        feedConfig.setUrl(feedConfig.getUrl() + "&v=2");
+        feedConfig.setExcludeRefs(List.of("con1"));
+        var diff = diff();
+        assertEquals(List.of(feedConfig.getKey()), keys(diff.getRemoved()));
+        assertEquals(List.of(feedConfig.getKey()), keys(diff.getAdded()));
+        assertTrue(diff.getFiltersChanged().isEmpty());
+    }
+
+    @Test
+    void addedAndRemovedFeeds() {
+        var groupFeeds = new ArrayList<>(newConfig.getGroups().get(0).getGroupFeeds());
+        var removed = groupFeeds.remove(0);
+        var added = new FeedsConfig.FeedConfig();
+        added.setKey("example_new");
+        added.setUrl("http://localhost:8081/example?key=example_new");
+        groupFeeds.add(added);
+        newConfig.getGroups().get(0).setGroupFeeds(groupFeeds);
+        var diff = diff();
+        assertEquals(List.of(removed.getKey()), keys(diff.getRemoved()));
+        assertEquals(List.of("example_new"), keys(diff.getAdded()));
+        assertEquals(newConfig.getGroups().get(0).getGroupId(), diff.getAdded().get(0).group().getGroupId());
+    }
+
+    @Test
+    void changedExternalUrlAffectsAllFeeds() {
+        newConfig.setExternalURL("https://feeds.example.com");
+        var count = newConfig.getGroups().stream().mapToInt(g -> g.getGroupFeeds().size()).sum();
+        assertEquals(count, diff().getFiltersChanged().size());
+    }
+
+    private FeedsConfigDiff diff() {
+        var previousPlans = FeedsConfigService.compileFilterPlans(null, Map.of(), previousConfig);
+        var newPlans = FeedsConfigService.compileFilterPlans(previousConfig, previousPlans, newConfig);
+        return FeedsConfigService.diff(previousConfig, previousPlans, newConfig, newPlans);
+    }
+
+    private static List<String> keys(List<FeedsConfigDiff.FeedChange> changes) {
+        return changes.stream().map(change -> change.feedConfig().getKey()).toList();
+    }
+
+    private static FeedsConfig readTestConfig() throws Exception {
+        try (var inputStream = FeedsConfigServiceTest.class.getClassLoader().getResourceAsStream("testFeeds.json")) {
+            return new ObjectMapper().readValue(inputStream, FeedsConfig.class);
+        }
+    }
+}
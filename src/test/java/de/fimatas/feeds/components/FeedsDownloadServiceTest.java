@@ -10,6 +10,10 @@ import de.fimatas.feeds.controller.ExampleController;
 import de.fimatas.feeds.model.FeedsCache;
 import de.fimatas.feeds.model.FeedsCircuitBreaker;
 import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import de.fimatas.feeds.model.FeedsHttpClientResponse;
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
+import de.fimatas.feeds.model.TtlInfo;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
@@ -43,8 +47,15 @@ import java.nio.file.Path;
 import java.time.*;
 import java.time.temporal.TemporalAmount;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 import static de.fimatas.feeds.model.FeedsLogMessages.*;
@@ -66,6 +77,7 @@ class FeedsDownloadServiceTest {
 
     private FeedsConfigService feedsConfigService;
     private FeedsDownloadService feedsDownloadService;
+    private FeedsRefreshPacer feedsRefreshPacer;
     private Logger logger;
     private ListAppender<ILoggingEvent> loggingListAppender;
 
@@ -88,16 +100,22 @@ class FeedsDownloadServiceTest {
 
         System.setProperty("active.profile", "test");
         FeedsCache.destroyCache();
+        FeedsCache.useStorage(new FeedsCacheJsonFileStorage());
         MockitoAnnotations.openMocks(this);
 
         feedsConfigService = new FeedsConfigService();
         feedsConfigService.useTestConfig = true;
-        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer);
+        // all test feeds share one host, pacing is tested on its own
+        feedsRefreshPacer = new FeedsRefreshPacer(feedsTimer);
+        feedsRefreshPacer.hostMinInterval = Duration.ZERO;
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer, new FeedsLeaderElection(), new FeedsAdaptiveTtl(), new FeedsRefreshGovernor(feedsTimer), new FeedsBackoff(feedsTimer), feedsRefreshPacer);
         feedsDownloadService.schedulerDelay = Duration.parse("PT5M");
     }
 
     @AfterEach
     void afterEach() {
+        feedsDownloadService.shutdown();
         FeedsCache.destroyCache();
         System.clearProperty("active.profile");
 
@@ -162,6 +180,163 @@ class FeedsDownloadServiceTest {
         assertEquals(getGroupsCount(), countLogging(NEW_OVERALL_DELAY));
     }
 
+    @Test
+    void refreshScheduler_pacedByHost() {
+        // Arrange
+        var waits = new LinkedList<Duration>();
+        feedsRefreshPacer = new FeedsRefreshPacer(feedsTimer) {
+            @Override
+            protected void sleep(Duration duration) {
+                waits.add(duration);
+            }
+        };
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer, new FeedsLeaderElection(), new FeedsAdaptiveTtl(), new FeedsRefreshGovernor(feedsTimer), new FeedsBackoff(feedsTimer), feedsRefreshPacer);
+        feedsDownloadService.schedulerDelay = Duration.parse("PT5M");
+        arrangeTimerBase1200(Duration.ofSeconds(0));
+        arrangeTestRefreshScheduler(0);
+        // Act
+        feedsDownloadService.refreshScheduler();
+        // Assert - all test feeds share one host, and the timer stands still: every download waits one interval more
+        verify(feedsHttpClient, times(getFeedsCount())).getFeeds(anyString());
+        assertEquals(getFeedsCount() - 1, waits.size());
+        IntStream.range(0, waits.size()).forEach(i -> assertEquals(feedsRefreshPacer.hostMinInterval.multipliedBy(i + 1), waits.get(i)));
+    }
+
+    @Test
+    void refreshSingleFeed_writesOnlyThatEntry() {
+        // Arrange
+        var storage = new RecordingStorage();
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(storage);
+        try {
+            arrangeTimerBase1200(Duration.ofSeconds(0));
+            arrangeTestRefreshScheduler(0);
+            feedsDownloadService.refreshScheduler();
+            storage.writtenFeeds.clear();
+            storage.fullWrites = 0;
+            var groupConfig = feedsConfigService.getFeedsGroups().get(0);
+            var feedConfig = groupConfig.getGroupFeeds().get(0);
+            // Act
+            feedsDownloadService.refreshSingleFeed(groupConfig, feedConfig, new FeedsDownloadService.FetchCycle());
+            // Assert
+            assertEquals(List.of(feedConfig.getKey()), storage.writtenFeeds);
+            assertEquals(0, storage.fullWrites);
+        } finally {
+            FeedsCache.destroyCache();
+        }
+    }
+
+    @Test
+    void refreshFeedOnDemand_checkedPacedAndWrittenWithScheduler() {
+        // Arrange
+        var storage = new RecordingStorage();
+        storage.incremental = false;
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(storage);
+        var waits = new LinkedList<Duration>();
+        feedsRefreshPacer = new FeedsRefreshPacer(feedsTimer) {
+            @Override
+            protected void sleep(Duration duration) {
+                waits.add(duration);
+            }
+        };
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer, new FeedsLeaderElection(), new FeedsAdaptiveTtl(), new FeedsRefreshGovernor(feedsTimer), new FeedsBackoff(feedsTimer), feedsRefreshPacer);
+        feedsDownloadService.schedulerDelay = Duration.parse("PT5M");
+        try {
+            arrangeTimerBase1200(Duration.ofSeconds(0));
+            arrangeTestRefreshScheduler(0);
+            var groupConfig = feedsConfigService.getFeedsGroups().get(0);
+            storage.fullWrites = 0;
+            // Act - outside the daily time window
+            arrangeTimerBase1200(Duration.ofHours(11).plusMinutes(30)); // 23:30
+            var outOfTime = feedsDownloadService.refreshFeedOnDemand(groupConfig, groupConfig.getGroupFeeds().get(0));
+            // Assert
+            assertNull(outOfTime);
+            verify(feedsHttpClient, times(0)).getFeeds(anyString());
+            assertEquals(1, countLogging(REFRESH_SCHEDULER_DAILY_END_TIME_REACHED));
+            // Act - two feeds of the same host
+            arrangeTimerBase1200(Duration.ofSeconds(0));
+            feedsDownloadService.refreshFeedOnDemand(groupConfig, groupConfig.getGroupFeeds().get(0));
+            feedsDownloadService.refreshFeedOnDemand(groupConfig, groupConfig.getGroupFeeds().get(1));
+            // Assert - paced, and not written per feed
+            verify(feedsHttpClient, times(2)).getFeeds(anyString());
+            assertEquals(List.of(feedsRefreshPacer.hostMinInterval), waits);
+            assertEquals(0, storage.fullWrites);
+            assertEquals(List.of(groupConfig.getGroupId()), feedsDownloadService.takeUnwrittenGroups().stream().map(FeedsCache.FeedsCacheGroup::getGroupId).toList());
+            assertTrue(feedsDownloadService.takeUnwrittenGroups().isEmpty());
+        } finally {
+            FeedsCache.destroyCache();
+        }
+    }
+
+    @Test
+    void configChanged_addedFeedDownloadedInBackground() throws Exception {
+        // Arrange
+        arrangeTimerBase1200(Duration.ofSeconds(0));
+        arrangeTestRefreshScheduler(0);
+        feedsDownloadService.refreshScheduler();
+        var groupConfig = feedsConfigService.getFeedsGroups().get(0);
+        var feedConfig = groupConfig.getGroupFeeds().get(0);
+        FeedsCache.getInstance().removeFeed(FeedsCache.getInstance().lookupGroup(groupConfig.getGroupId()), feedConfig.getKey());
+        var downloadThread = new CompletableFuture<String>();
+        when(feedsHttpClient.getFeeds(anyString())).thenAnswer(invocation -> {
+            downloadThread.complete(Thread.currentThread().getName());
+            return new ExampleController(feedsTimer).getFeedResponse(feedConfig.getKey());
+        });
+        var diff = new FeedsConfigDiff();
+        diff.getAdded().add(new FeedsConfigDiff.FeedChange(groupConfig, feedConfig));
+        // Act
+        feedsDownloadService.configChanged(diff);
+        // Assert
+        assertEquals("feeds-config-change", downloadThread.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fetchCycle_concurrentCallersShareOneDownload() throws Exception {
+        // Arrange
+        var fetchCycle = new FeedsDownloadService.FetchCycle();
+        var downloads = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var response = new FeedsHttpClientResponse(null, 200, minimalFeed());
+        var callers = Executors.newFixedThreadPool(4);
+        try {
+            // Act
+            var results = IntStream.range(0, 4).mapToObj(i -> callers.submit(() -> fetchCycle.fetch("http://localhost/shared", url -> {
+                downloads.incrementAndGet();
+                awaitQuietly(release);
+                return response;
+            }))).toList();
+            Thread.sleep(200);
+            release.countDown();
+            // Assert
+            for (Future<FeedsHttpClientResponse> result : results) {
+                assertSame(response, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, downloads.get());
+            assertTrue(fetchCycle.isFetched("http://localhost/shared"));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void fetchCycle_errorIsShared() {
+        // Arrange
+        var fetchCycle = new FeedsDownloadService.FetchCycle();
+        var downloads = new AtomicInteger();
+        // Act + Assert
+        for (int i = 0; i < 2; i++) {
+            var exception = assertThrows(IllegalStateException.class, () -> fetchCycle.fetch("http://localhost/failing", url -> {
+                downloads.incrementAndGet();
+                throw new IllegalStateException("test exception httpclient");
+            }));
+            assertEquals("test exception httpclient", exception.getMessage());
+        }
+        assertEquals(1, downloads.get());
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {0, 1, 2}) // 0=none, 1=httpClient, 2=processing
     void refreshScheduler_callMultipleSimple(int errorType) {
@@ -213,6 +388,30 @@ class FeedsDownloadServiceTest {
         assertEquals(getGroupsCount(), countLogging(NEW_OVERALL_DELAY));
     }
 
+    @Test
+    void refreshScheduler_adaptiveTtlRefreshesOnlyDueFeeds() {
+        // Arrange
+        var feedsAdaptiveTtl = new FeedsAdaptiveTtl();
+        feedsAdaptiveTtl.adaptiveTtl = true;
+        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer, new FeedsLeaderElection(), feedsAdaptiveTtl, new FeedsRefreshGovernor(feedsTimer), new FeedsBackoff(feedsTimer), feedsRefreshPacer);
+        feedsDownloadService.schedulerDelay = Duration.parse("PT5M");
+        arrangeTimerBase1200(Duration.ofSeconds(0));
+        arrangeTestRefreshScheduler(0);
+        feedsDownloadService.refreshScheduler();
+        // a quiet feed doesn't hold back a busy one, and the busy one isn't bound to the group default
+        var busyFeed = feedsConfigService.getFeedsGroups().get(0).getGroupFeeds().get(0);
+        feedsConfigService.getFeedsGroups().forEach(fg -> FeedsCache.getInstance().lookupGroup(fg.getGroupId()).getGroupFeeds()
+                .forEach((k, v) -> v.setTtl(new TtlInfo(k.equals(busyFeed.getKey()) ? Duration.ofMinutes(10) : Duration.ofHours(24), "test"))));
+        // Act - below the group default of 13 minutes
+        arrangeTimerBase1200(Duration.ofMinutes(11));
+        feedsDownloadService.lastSchedulerRun = testLocalDateTime.minusDays(1);
+        feedsDownloadService.refreshScheduler();
+        // Assert
+        verify(feedsHttpClient, times(getFeedsCount() + 1)).getFeeds(anyString());
+        verify(feedsHttpClient, times(2)).getFeeds(busyFeed.getUrl());
+        assertEquals(getGroupsCount() + 1, countLogging(NEW_OVERALL_DELAY));
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {0, 1, 2}) // 0=none, 1=httpClient, 2=processing
     void refreshScheduler_callMultipleCheckIntervalAgainstMethodCallWithEmptyGroup(int errorType) {
@@ -273,6 +472,34 @@ class FeedsDownloadServiceTest {
         assertEquals(getGroupsCount() * COUNT_MULTIPLE_CALLS, countLogging(NEW_OVERALL_DELAY));
     }
 
+    @Test
+    void refreshScheduler_throttledDownloadIsNoFailure() {
+        // Arrange
+        var feedsBackoff = new FeedsBackoff(feedsTimer);
+        feedsBackoff.adaptiveBackoff = true;
+        feedsDownloadService = new FeedsDownloadService(feedsConfigService, feedsProcessingService, feedsHttpClient, feedsTimer, new FeedsLeaderElection(), new FeedsAdaptiveTtl(), new FeedsRefreshGovernor(feedsTimer), feedsBackoff, feedsRefreshPacer);
+        feedsDownloadService.schedulerDelay = Duration.parse("PT5M");
+        arrangeTimerBase1200(Duration.ofSeconds(0));
+        arrangeTestRefreshScheduler(0);
+        arrangeDefaultRefreshDuration(10);
+        feedsDownloadService.refreshScheduler();
+        when(feedsHttpClient.getFeeds(anyString())).thenThrow(new FeedsRefreshThrottledException("no download permit"));
+        // Act
+        IntStream.range(0, 5).forEach(i -> {
+            arrangeTimerBase1200(Duration.ofMinutes(15).multipliedBy(i + 1));
+            feedsDownloadService.refreshScheduler();
+        });
+        // Assert
+        verify(feedsHttpClient, times(getFeedsCount() * 6)).getFeeds(anyString());
+        assertTrue(feedsBackoff.getBackoffStates().isEmpty());
+        feedsConfigService.getFeedsGroups().forEach(groupConfig -> groupConfig.getGroupFeeds().forEach(feedConfig -> {
+            assertEquals(0, FeedsCache.getInstance().lookupFeed(feedConfig.getKey()).getRefreshErrorCounter());
+            var circuitBreaker = feedsDownloadService.getFeedsDownloadCircuitBreaker().getCircuitBreaker(feedConfig);
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+            assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        }));
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {1, 2}) // 1=httpClient, 2=processing
     void refreshScheduler_callMultipleWithErrorForCircuitBreakerOpenState(int errorType) {
@@ -496,6 +723,37 @@ class FeedsDownloadServiceTest {
                 "The configured values for @Value and @Scheduled should match.");
     }
 
+    private static class RecordingStorage extends FeedsCacheMemoryStorage {
+
+        private final List<String> writtenFeeds = new LinkedList<>();
+        private int fullWrites = 0;
+        private boolean incremental = true;
+
+        @Override
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        @Override
+        public void write(FeedsCache.FeedsCacheRoot root) {
+            fullWrites++;
+            super.write(root);
+        }
+
+        @Override
+        public void writeFeed(FeedsCache.FeedsCacheRoot root, FeedsCache.FeedsCacheGroup group, FeedsCache.FeedCacheEntry feedCacheEntry) {
+            writtenFeeds.add(feedCacheEntry.getKey());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @SneakyThrows
     private String minimalFeed(){
         Channel channel = new Channel();
@@ -0,0 +1,307 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigDiff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedsDueSchedulerTest {
+
+    @Mock
+    private FeedsDownloadService feedsDownloadService;
+
+    @Mock
+    private FeedsHttpClient feedsHttpClient;
+
+    @Mock
+    private FeedsTimer feedsTimer;
+
+    @Mock
+    private FeedsRefreshThrough feedsRefreshThrough;
+
+    private FeedsConfigService feedsConfigService;
+    private FeedsDueScheduler feedsDueScheduler;
+    private FeedsRefreshPacer feedsRefreshPacer;
+
+    private LocalDateTime testLocalDateTime;
+    private final Map<String, Duration> ttlByKey = new HashMap<>();
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 12, 0);
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(20);
+    private static final int FEEDS = 9;
+
+    @BeforeEach
+    void beforeEach() {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(new FeedsCacheJsonFileStorage());
+        MockitoAnnotations.openMocks(this);
+
+        testLocalDateTime = START;
+        ttlByKey.clear();
+        lenient().when(feedsTimer.localDateTimeNow()).thenAnswer(invocation -> testLocalDateTime);
+        lenient().when(feedsHttpClient.getDownloadUrlFuseDuration()).thenReturn(Duration.ofMinutes(1));
+        lenient().when(feedsDownloadService.refreshSingleFeed(any(), any(), any())).thenAnswer(invocation -> {
+            FeedsConfig.FeedConfig feedConfig = invocation.getArgument(1);
+            return entry(feedConfig.getKey(), "<rss>" + feedConfig.getKey() + "</rss>", testLocalDateTime, ttlByKey.getOrDefault(feedConfig.getKey(), DEFAULT_TTL));
+        });
+
+        feedsConfigService = new FeedsConfigService();
+        feedsConfigService.useTestConfig = true;
+        feedsRefreshPacer = new FeedsRefreshPacer(feedsTimer);
+        feedsRefreshPacer.hostMinInterval = Duration.ZERO;
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        feedsDueScheduler = new FeedsDueScheduler(feedsConfigService, feedsDownloadService, feedsHttpClient, feedsTimer,
+                new FeedsRefreshGovernor(feedsTimer), new FeedsBackoff(feedsTimer), feedsRefreshPacer, feedsRefreshThrough);
+        feedsDueScheduler.refreshJitterRatio = 0;
+    }
+
+    @AfterEach
+    void afterEach() {
+        feedsDueScheduler.shutdown();
+        FeedsCache.destroyCache();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void refreshInOrderOfDueTime() {
+        // Arrange
+        var group = FeedsCache.getInstance().defineGroup("ExampleGroup1");
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1A", "<rss>example_G1A</rss>", START.minusMinutes(25), Duration.ofMinutes(20))); // due -5m
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1B", "<rss>example_G1B</rss>", START.minusMinutes(30), Duration.ofMinutes(20))); // due -10m
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1C", "<rss>example_G1C</rss>", START, Duration.ofMinutes(20))); // due +20m
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1X", "<rss>example_G1X</rss>", START.minusMinutes(21), Duration.ofMinutes(20))); // due -1m
+        // Act
+        feedsDueScheduler.wakeUp();
+        // Assert
+        InOrder inOrder = inOrder(feedsDownloadService);
+        inOrder.verify(feedsDownloadService).refreshSingleFeed(any(), argThat(feedConfig -> feedConfig.getKey().equals("example_G1B")), any());
+        inOrder.verify(feedsDownloadService).refreshSingleFeed(any(), argThat(feedConfig -> feedConfig.getKey().equals("example_G1A")), any());
+        inOrder.verify(feedsDownloadService).refreshSingleFeed(any(), argThat(feedConfig -> feedConfig.getKey().equals("example_G1X")), any());
+        inOrder.verify(feedsDownloadService).refreshSingleFeed(any(), argThat(feedConfig -> feedConfig.getKey().equals("example_G2D")), any());
+        verifyRefreshed("example_G1C", 0);
+        verify(feedsDownloadService, times(FEEDS - 1)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void requeueAtTtl() {
+        // Arrange
+        ttlByKey.put("example_G1A", Duration.ofMinutes(5));
+        feedsDueScheduler.wakeUp();
+        verify(feedsDownloadService, times(FEEDS)).refreshSingleFeed(any(), any(), any());
+        clearInvocations(feedsDownloadService);
+        // Act + Assert
+        wakeUpAt(START.plusMinutes(4));
+        verify(feedsDownloadService, times(0)).refreshSingleFeed(any(), any(), any());
+
+        wakeUpAt(START.plusMinutes(5));
+        verifyRefreshed("example_G1A", 1);
+        verify(feedsDownloadService, times(1)).refreshSingleFeed(any(), any(), any());
+
+        wakeUpAt(START.plusMinutes(19)); // due since +10m, next at +24m
+        verifyRefreshed("example_G1A", 2);
+        verify(feedsDownloadService, times(2)).refreshSingleFeed(any(), any(), any());
+
+        wakeUpAt(START.plusMinutes(20));
+        verifyRefreshed("example_G1A", 2);
+        verify(feedsDownloadService, times(FEEDS + 1)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void requeueAtFuseDuration() {
+        // Arrange
+        when(feedsHttpClient.getDownloadUrlFuseDuration()).thenReturn(Duration.ofMinutes(30));
+        ttlByKey.put("example_G1A", Duration.ofMinutes(5));
+        feedsDueScheduler.wakeUp();
+        clearInvocations(feedsDownloadService);
+        // Act + Assert
+        wakeUpAt(START.plusMinutes(29));
+        verify(feedsDownloadService, times(0)).refreshSingleFeed(any(), any(), any());
+
+        wakeUpAt(START.plusMinutes(30));
+        verify(feedsDownloadService, times(FEEDS)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void cachedFeedsDueAtFuseDuration() {
+        // Arrange
+        when(feedsHttpClient.getDownloadUrlFuseDuration()).thenReturn(Duration.ofMinutes(30));
+        var group = FeedsCache.getInstance().defineGroup("ExampleGroup1");
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1A", "<rss>example_G1A</rss>", START.minusMinutes(15), Duration.ofMinutes(5)));
+        // Act
+        feedsDueScheduler.wakeUp();
+        wakeUpAt(START.plusMinutes(14));
+        // Assert
+        verifyRefreshed("example_G1A", 0);
+        wakeUpAt(START.plusMinutes(15));
+        verifyRefreshed("example_G1A", 1);
+    }
+
+    @Test
+    void jitterScalesWithInterval() {
+        // Arrange
+        feedsDueScheduler.refreshJitterRatio = 0.5;
+        ttlByKey.put("example_G1A", Duration.ofHours(2));
+        feedsDueScheduler.wakeUp();
+        // Act + Assert
+        wakeUpAt(START.plusHours(2).minusSeconds(1));
+        verifyRefreshed("example_G1A", 1);
+        wakeUpAt(START.plusHours(3));
+        verifyRefreshed("example_G1A", 2);
+    }
+
+    @Test
+    void hostIntervalDefersFeeds() {
+        // Arrange
+        feedsRefreshPacer.hostMinInterval = Duration.ofSeconds(10);
+        // Act + Assert - all test feeds share one host
+        feedsDueScheduler.wakeUp();
+        verify(feedsDownloadService, times(1)).refreshSingleFeed(any(), any(), any());
+        wakeUpAt(START.plusSeconds(10));
+        verify(feedsDownloadService, times(2)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void expediteWithoutPerFeedScheduling() {
+        // Act - not initialized, as in group mode
+        feedsDueScheduler.expedite("example_G1A");
+        // Assert
+        verify(feedsRefreshThrough, times(1)).refreshInBackground("example_G1A");
+        verify(feedsDownloadService, never()).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void expediteConcurrently() throws Exception {
+        // Arrange
+        feedsConfigService.perFeedScheduling = true;
+        feedsConfigService.overwriteStartupDelayMinutes(60);
+        var paused = new AtomicBoolean(false);
+        when(feedsDownloadService.skipFeedRefresh()).thenAnswer(invocation -> paused.get());
+        when(feedsDownloadService.isRefreshPermitted(any())).thenReturn(true);
+        feedsDueScheduler.init();
+        feedsDueScheduler.wakeUp();
+        clearInvocations(feedsDownloadService);
+        // the wake-ups scheduled by expedite() do nothing until all requests are done
+        paused.set(true);
+        var keys = feedsConfigService.getFeedsConfigIndex().getFeeds().stream().map(indexedFeed -> indexedFeed.feedConfig().getKey()).toList();
+        var executor = Executors.newFixedThreadPool(8);
+        var start = new CountDownLatch(1);
+        var requests = IntStream.range(0, 8).mapToObj(i -> executor.submit(() -> {
+            start.await();
+            keys.forEach(feedsDueScheduler::expedite);
+            return null;
+        })).toList();
+        start.countDown();
+        for(var request : requests){
+            request.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        paused.set(false);
+        // Act
+        wakeUpAt(START.plusMinutes(1));
+        wakeUpAt(START.plusMinutes(2));
+        // Assert - every feed queued once, refreshed once
+        keys.forEach(key -> verifyRefreshed(key, 1));
+        verify(feedsDownloadService, times(FEEDS)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void configChangedRemovedFeed() {
+        // Arrange
+        feedsDueScheduler.wakeUp();
+        clearInvocations(feedsDownloadService);
+        var diff = new FeedsConfigDiff();
+        diff.getRemoved().add(lookupChange("example_G1A"));
+        // Act
+        feedsDueScheduler.configChanged(diff);
+        wakeUpAt(START.plus(DEFAULT_TTL));
+        // Assert
+        verifyRefreshed("example_G1A", 0);
+        verify(feedsDownloadService, times(FEEDS - 1)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void configChangedAddedFeedsStaggered() {
+        // Arrange
+        feedsRefreshPacer.maxRefreshesPerMinute = 30;
+        feedsDueScheduler.wakeUp();
+        var removed = new FeedsConfigDiff();
+        removed.getRemoved().add(lookupChange("example_G1A"));
+        removed.getRemoved().add(lookupChange("example_G1B"));
+        feedsDueScheduler.configChanged(removed);
+        clearInvocations(feedsDownloadService);
+        var added = new FeedsConfigDiff();
+        added.getAdded().add(lookupChange("example_G1A"));
+        added.getAdded().add(lookupChange("example_G1B"));
+        // Act + Assert
+        feedsDueScheduler.configChanged(added);
+        wakeUpAt(START.plusSeconds(1));
+        verifyRefreshed("example_G1A", 1);
+        verifyRefreshed("example_G1B", 0);
+
+        wakeUpAt(START.plusSeconds(2)); // one minute / 30
+        verifyRefreshed("example_G1B", 1);
+        verify(feedsDownloadService, times(2)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void configChangedBeforeFirstWakeUp() {
+        // Arrange
+        var removed = new FeedsConfigDiff();
+        removed.getRemoved().add(lookupChange("example_G1A"));
+        // Act
+        feedsDueScheduler.configChanged(removed);
+        feedsDueScheduler.wakeUp();
+        // Assert - the first wake-up reads the whole config
+        verifyRefreshed("example_G1A", 1);
+        verify(feedsDownloadService, times(FEEDS)).refreshSingleFeed(any(), any(), any());
+    }
+
+    @Test
+    void synchronizeRemovesUnconfiguredFeeds() {
+        // Arrange
+        var group = FeedsCache.getInstance().defineGroup("ExampleGroup1");
+        FeedsCache.getInstance().updateFeed(group, entry("obsolete", "<rss>obsolete</rss>", START, DEFAULT_TTL));
+        // Act
+        feedsDueScheduler.wakeUp();
+        // Assert
+        assertNull(FeedsCache.getInstance().lookupFeed("obsolete"));
+        verifyRefreshed("obsolete", 0);
+    }
+
+    private void wakeUpAt(LocalDateTime time) {
+        testLocalDateTime = time;
+        feedsDueScheduler.wakeUp();
+    }
+
+    private void verifyRefreshed(String key, int times) {
+        verify(feedsDownloadService, times(times)).refreshSingleFeed(any(), argThat(feedConfig -> feedConfig.getKey().equals(key)), any());
+    }
+
+    private FeedsConfigDiff.FeedChange lookupChange(String key) {
+        var indexedFeed = feedsConfigService.getFeedsConfigIndex().lookupFeed(key);
+        return new FeedsConfigDiff.FeedChange(indexedFeed.group(), indexedFeed.feedConfig());
+    }
+}
@@ -0,0 +1,124 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigIndex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsGroupAggregatorTest {
+
+    private final HashMap<String, FeedsCache.FeedCacheEntry> cache = new HashMap<>();
+    private final FeedsConfigIndex configIndex = FeedsConfigIndex.of(emptyConfig());
+
+    @Test
+    void mergedByPubDateWithCap() {
+        cache.put("a", entry("a", rss("xmlns:dc=\"http://purl.org/dc/elements/1.1/\"", item("a1", 1), item("a3", 3), item("a5", 5))));
+        cache.put("b", entry("b", rss("", item("b4", 4), item("b2", 2))));
+        var aggregate = new FeedsGroupAggregator.GroupAggregate("news & more");
+
+        var merged = update(aggregate, List.of("a", "b"), 4, "https://example.com");
+        var content = merged.feedCacheEntry().getContent();
+        assertEquals(content, new String(merged.content(), StandardCharsets.UTF_8));
+        assertEquals(List.of("a5", "b4", "a3", "b2"), titles(content));
+        assertTrue(content.contains("<rss version=\"2.0\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"));
+        assertTrue(content.contains("<title>news &amp; more</title>"));
+    }
+
+    @Test
+    void mergedAgainOnlyWhenAMemberChanged() {
+        cache.put("a", entry("a", rss("", item("a1", 1))));
+        cache.put("b", entry("b", rss("", item("b2", 2))));
+        var aggregate = new FeedsGroupAggregator.GroupAggregate("g");
+
+        var first = update(aggregate, List.of("a", "b"), 10, null);
+        assertSame(first, update(aggregate, List.of("a", "b"), 10, null));
+
+        cache.put("a", entry("a", rss("", item("a1", 1), item("a3", 3))));
+        var second = update(aggregate, List.of("a", "b"), 10, null);
+        assertNotSame(first, second);
+        assertEquals(List.of("a3", "b2", "a1"), titles(second.feedCacheEntry().getContent()));
+
+        cache.remove("b");
+        assertEquals(List.of("a3", "a1"), titles(update(aggregate, List.of("a", "b"), 10, null).feedCacheEntry().getContent()));
+        cache.put("b", entry("b", rss("", item("b2", 2))));
+        assertEquals(List.of("a3", "a1"), titles(update(aggregate, List.of("a"), 10, null).feedCacheEntry().getContent()));
+    }
+
+    @Test
+    void precomputedOnCommit() {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(new FeedsCacheJsonFileStorage());
+        try {
+            var feedsConfigService = new FeedsConfigService();
+            feedsConfigService.useTestConfig = true;
+            var aggregator = new FeedsGroupAggregator(feedsConfigService, null);
+            var group = FeedsCache.getInstance().defineGroup("ExampleGroup1");
+            var previous = cached(group, "example_G1A", rss("", item("a1", 1)));
+
+            var first = aggregator.lookupAggregate("ExampleGroup1");
+            assertEquals(List.of("a1"), titles(first.feedCacheEntry().getContent()));
+            assertSame(first, aggregator.lookupAggregate("ExampleGroup1"));
+
+            var committed = cached(group, "example_G1A", rss("", item("a1", 1), item("a2", 2)));
+            aggregator.committed(new FeedsDownloadService.FeedCommit("ExampleGroup1", previous, committed));
+            var second = aggregator.lookupAggregate("ExampleGroup1");
+            assertEquals(List.of("a2", "a1"), titles(second.feedCacheEntry().getContent()));
+            assertSame(second, aggregator.lookupAggregate("ExampleGroup1"));
+
+            // changed without a commit, e.g. reloaded from the storage
+            cached(group, "example_G1A", rss("", item("a3", 3)));
+            assertEquals(List.of("a3"), titles(aggregator.lookupAggregate("ExampleGroup1").feedCacheEntry().getContent()));
+            assertNull(aggregator.lookupAggregate("unknown"));
+        } finally {
+            FeedsCache.destroyCache();
+            System.clearProperty("active.profile");
+        }
+    }
+
+    // a new group feeds version of the cache per call, like a commit
+    private FeedsGroupAggregator.Aggregate update(FeedsGroupAggregator.GroupAggregate aggregate, List<String> keys, int maxItems, String externalURL) {
+        var groupFeeds = Map.copyOf(cache);
+        var merged = aggregate.update(keys, groupFeeds::get, maxItems, externalURL, configIndex, groupFeeds);
+        assertSame(merged, aggregate.lookup(configIndex, groupFeeds));
+        assertNull(aggregate.lookup(configIndex, Map.copyOf(cache)));
+        return merged;
+    }
+
+    private static FeedsConfig emptyConfig() {
+        var config = new FeedsConfig();
+        config.setGroups(List.of());
+        return config;
+    }
+
+    private static FeedsCache.FeedCacheEntry cached(FeedsCache.FeedsCacheGroup group, String key, String content) {
+        var entry = entry(key, content, LocalDateTime.now(), Duration.ofHours(1));
+        FeedsCache.getInstance().updateFeed(group, entry);
+        return entry;
+    }
+
+    private static String item(String title, int hour) {
+        return "<item>\n      <title>" + title + "</title>\n      <pubDate>Mon, 19 Oct 2026 0" + hour + ":00:00 GMT</pubDate>\n    </item>\n";
+    }
+
+    private static String rss(String namespaces, String... items) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rss version=\"2.0\" " + namespaces + ">\n  <channel>\n    <title>t</title>\n    "
+                + String.join("    ", items) + "  </channel>\n</rss>\n";
+    }
+
+    private static List<String> titles(String content) {
+        return Arrays.stream(content.split("<item>")).skip(1)
+                .map(item -> item.substring(item.indexOf("<title>") + 7, item.indexOf("</title>"))).toList();
+    }
+}
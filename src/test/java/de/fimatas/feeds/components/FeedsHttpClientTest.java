@@ -1,5 +1,6 @@
 package de.fimatas.feeds.components;
 
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
@@ -57,7 +58,7 @@ public class FeedsHttpClientTest {
             feedsHttpClient.getFeeds("http://localhost:8080");
             verify(httpClientMock, times(1)).execute(any(HttpGet.class), any(HttpClientResponseHandler.class));
 
-            Exception ex = assertThrows(IllegalStateException.class, () -> feedsHttpClient.getFeeds("http://localhost:8080"));
+            Exception ex = assertThrows(FeedsRefreshThrottledException.class, () -> feedsHttpClient.getFeeds("http://localhost:8080"));
             assertEquals("too many calls to url: http://localhost:8080", ex.getMessage());
             verify(httpClientMock, times(1)).execute(any(HttpGet.class), any(HttpClientResponseHandler.class));
 
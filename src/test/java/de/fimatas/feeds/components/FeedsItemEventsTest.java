@@ -0,0 +1,92 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsItemEventsTest {
+
+    private FeedsItemEvents feedsItemEvents;
+
+    @BeforeEach
+    void beforeEach() {
+        var config = new FeedsConfig();
+        config.setGroups(new ArrayList<>(List.of(group("news", "a"), group("other", "b"))));
+        var index = FeedsConfigIndex.of(config);
+        feedsItemEvents = new FeedsItemEvents(new FeedsConfigService() {
+            @Override
+            public FeedsConfigIndex getFeedsConfigIndex() {
+                return index;
+            }
+        }, null);
+        feedsItemEvents.itemEvents = true;
+    }
+
+    @Test
+    void newItemsPushedToSubscribers() {
+        var feedEvents = new ArrayList<ServerSentEvent<FeedsItemEvents.ItemEvent>>();
+        var groupEvents = new ArrayList<ServerSentEvent<FeedsItemEvents.ItemEvent>>();
+        var otherGroupEvents = new ArrayList<ServerSentEvent<FeedsItemEvents.ItemEvent>>();
+        feedsItemEvents.subscribeFeed("a").subscribe(feedEvents::add);
+        feedsItemEvents.subscribeGroup("news").subscribe(groupEvents::add);
+        feedsItemEvents.subscribeGroup("other").subscribe(otherGroupEvents::add);
+
+        var previous = entry("a", rss("<item><title>one</title></item>"));
+        feedsItemEvents.committed(new FeedsDownloadService.FeedCommit("news", null, previous));
+        assertTrue(feedEvents.isEmpty());
+
+        feedsItemEvents.committed(new FeedsDownloadService.FeedCommit("news", previous,
+                entry("a", rss("<item><title>two</title><pubDate>Mon, 19 Oct 2026 10:00:00 GMT</pubDate></item><item><title>one</title></item>"))));
+        assertEquals(1, feedEvents.size());
+        assertEquals("item", feedEvents.get(0).event());
+        var event = feedEvents.get(0).data();
+        assertEquals("a", event.feed());
+        assertEquals("2026-10-19T10:00:00Z", event.published());
+        assertTrue(event.item().contains("two"));
+        assertEquals(1, groupEvents.size());
+        assertTrue(otherGroupEvents.isEmpty());
+    }
+
+    @Test
+    void editedItemNotPushed() {
+        var feedEvents = new ArrayList<ServerSentEvent<FeedsItemEvents.ItemEvent>>();
+        feedsItemEvents.subscribeFeed("a").subscribe(feedEvents::add);
+
+        var previous = entry("a", rss("<item><title>one</title><guid>1</guid></item><item><title>two</title><link>https://a.example.com/2</link></item>"));
+        feedsItemEvents.committed(new FeedsDownloadService.FeedCommit("news", previous,
+                entry("a", rss("<item><title>one, edited</title><guid>1</guid></item><item><title>two, edited</title><link>https://a.example.com/2</link></item>"
+                        + "<item><title>three</title><guid>3</guid></item>"))));
+        assertEquals(1, feedEvents.size());
+        assertTrue(feedEvents.get(0).data().item().contains("three"));
+    }
+
+    @Test
+    void unknownOrDisabled() {
+        assertNull(feedsItemEvents.subscribeFeed("unknown"));
+        assertNull(feedsItemEvents.subscribeGroup("unknown"));
+        feedsItemEvents.itemEvents = false;
+        assertNull(feedsItemEvents.subscribeFeed("a"));
+    }
+
+    private static String rss(String items) {
+        return "<rss version=\"2.0\"><channel><title>t</title>" + items + "</channel></rss>";
+    }
+
+    private static FeedsConfig.FeedsGroup group(String groupId, String key) {
+        var feedConfig = new FeedsConfig.FeedConfig();
+        feedConfig.setKey(key);
+        feedConfig.setUrl("https://" + key + ".example.com/rss");
+        var group = new FeedsConfig.FeedsGroup();
+        group.setGroupId(groupId);
+        group.setGroupFeeds(new ArrayList<>(List.of(feedConfig)));
+        return group;
+    }
+}
@@ -0,0 +1,150 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two instances sharing a cache directory, within one JVM - a second lock on the same file fails like it does
+ * for another process.
+ */
+public class FeedsLeaderElectionTest {
+
+    private String userHome;
+    private File tempDir;
+    private FeedsLeaderElection instanceA;
+    private FeedsLeaderElection instanceB;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(new FeedsCacheJsonFileStorage());
+        userHome = System.getProperty("user.home");
+        tempDir = Files.createTempDirectory("feeds-leader").toFile();
+        System.setProperty("user.home", tempDir.getAbsolutePath());
+        FileUtils.forceMkdirParent(FeedsCache.lookupCacheFile());
+        instanceA = newInstance();
+        instanceB = newInstance();
+    }
+
+    @AfterEach
+    void afterEach() {
+        instanceA.release();
+        instanceB.release();
+        FeedsCache.destroyCache();
+        System.setProperty("user.home", userHome);
+        FileUtils.deleteQuietly(tempDir);
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void lockAcquisition() {
+        assertTrue(instanceA.isLeader());
+        assertFalse(instanceB.isLeader());
+        assertTrue(instanceA.isLeader());
+        assertFalse(instanceB.isLeader());
+    }
+
+    @Test
+    void failover() {
+        assertTrue(instanceA.isLeader());
+        assertFalse(instanceB.isLeader());
+
+        instanceA.release();
+
+        assertTrue(instanceB.isLeader());
+        assertFalse(instanceA.isLeader());
+    }
+
+    @Test
+    void disabled() {
+        instanceA.leaderElection = false;
+        instanceB.leaderElection = false;
+        assertTrue(instanceA.isLeader());
+        assertTrue(instanceB.isLeader());
+    }
+
+    @Test
+    void followerReload() throws Exception {
+        var leaderStorage = new FeedsCacheJsonFileStorage();
+        var stored = newRoot();
+        leaderStorage.write(stored);
+        assertTrue(instanceA.isLeader());
+
+        // instance B reads the cache written by A
+        var followerCache = FeedsCache.getInstance();
+        var unchangedGroup = followerCache.lookupGroup("unchanged");
+        assertEquals("<rss>b1</rss>", followerCache.lookupFeed("b").getContent());
+
+        // A writes a new generation of one group, the file keeps its old modification time
+        var cacheFile = FeedsCache.lookupCacheFile();
+        var lastModified = cacheFile.lastModified();
+        stored.setGeneration(2);
+        stored.getCacheGroups().get(1).setGeneration(2);
+        stored.getCacheGroups().get(1).getGroupFeeds().put("b", entry("b", "<rss>b2</rss>"));
+        leaderStorage.write(stored);
+        assertTrue(cacheFile.setLastModified(lastModified));
+
+        instanceB.heartbeat();
+
+        assertEquals("<rss>b2</rss>", followerCache.lookupFeed("b").getContent());
+        assertSame(unchangedGroup, followerCache.lookupGroup("unchanged"));
+
+        // nothing new, nothing is read
+        var changedGroup = followerCache.lookupGroup("changed");
+        instanceB.heartbeat();
+        assertSame(changedGroup, followerCache.lookupGroup("changed"));
+    }
+
+    @Test
+    void followerTakesOverWithStoredGeneration() {
+        var leaderStorage = new FeedsCacheJsonFileStorage();
+        var stored = newRoot();
+        leaderStorage.write(stored);
+        assertTrue(instanceA.isLeader());
+        var cache = FeedsCache.getInstance();
+        instanceB.heartbeat();
+
+        instanceA.release();
+        instanceB.heartbeat();
+        assertTrue(instanceB.isLeader());
+
+        // the new leader continues the generations of the old one
+        cache.writeToStorage();
+        assertEquals(2, leaderStorage.generation());
+        assertEquals(2, leaderStorage.read().getCacheGroups().get(0).getGeneration());
+    }
+
+    private static FeedsLeaderElection newInstance() {
+        var instance = new FeedsLeaderElection();
+        instance.leaderElection = true;
+        return instance;
+    }
+
+    private static FeedsCache.FeedsCacheRoot newRoot() {
+        var root = new FeedsCache.FeedsCacheRoot();
+        root.setGeneration(1);
+        root.getCacheGroups().add(newGroup("unchanged", entry("a", "<rss>a1</rss>")));
+        root.getCacheGroups().add(newGroup("changed", entry("b", "<rss>b1</rss>")));
+        return root;
+    }
+
+    private static FeedsCache.FeedsCacheGroup newGroup(String groupId, FeedsCache.FeedCacheEntry entry) {
+        var group = new FeedsCache.FeedsCacheGroup();
+        group.setGroupId(groupId);
+        group.setGeneration(1);
+        group.setLastRefreshMethodCall(LocalDateTime.now());
+        group.getGroupFeeds().put(entry.getKey(), entry);
+        return group;
+    }
+}
@@ -0,0 +1,118 @@
+package de.fimatas.feeds.components;
+
+import com.rometools.rome.feed.rss.Description;
+import com.rometools.rome.feed.rss.Item;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsConfigIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsNearDuplicatesTest {
+
+    private static final String STORY = "Central bank raises interest rates by a quarter point to fight persistent inflation";
+
+    private LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private FeedsConfig.FeedConfig a;
+    private FeedsConfig.FeedConfig b;
+    private FeedsConfig.FeedConfig c;
+    private FeedsNearDuplicates feedsNearDuplicates;
+
+    @BeforeEach
+    void beforeEach() {
+        a = feedConfig("a");
+        b = feedConfig("b");
+        c = feedConfig("c");
+        var config = new FeedsConfig();
+        config.setGroups(new ArrayList<>(List.of(group("news", a, b), group("other", c))));
+        var index = FeedsConfigIndex.of(config);
+        feedsNearDuplicates = new FeedsNearDuplicates(new FeedsConfigService() {
+            @Override
+            public FeedsConfigIndex getFeedsConfigIndex() {
+                return index;
+            }
+        }, new FeedsTimer() {
+            @Override
+            public LocalDateTime localDateTimeNow() {
+                return now;
+            }
+        });
+        feedsNearDuplicates.nearDuplicateSuppression = true;
+    }
+
+    @Test
+    void nearDuplicateOfOtherFeedInGroupSuppressed() {
+        assertEquals(2, feedsNearDuplicates.suppress(a, List.of(item(STORY), item("Local team wins the cup final after extra time"))).size());
+
+        var reworded = item("Central bank raises interest rates by quarter point to fight persistent inflation");
+        var unrelated = item("Storm warning issued for the northern coast this weekend");
+        assertEquals(List.of(unrelated), feedsNearDuplicates.suppress(b, List.of(reworded, unrelated)));
+        // the first feed keeps its item, other groups aren't affected
+        assertEquals(1, feedsNearDuplicates.suppress(a, List.of(item(STORY))).size());
+        assertEquals(1, feedsNearDuplicates.suppress(c, List.of(item(STORY))).size());
+    }
+
+    @Test
+    void windowAndDisabled() {
+        feedsNearDuplicates.suppress(a, List.of(item(STORY)));
+        now = now.plus(feedsNearDuplicates.nearDuplicateWindow);
+        assertEquals(1, feedsNearDuplicates.suppress(b, List.of(item(STORY))).size());
+        assertEquals(0, feedsNearDuplicates.suppress(a, List.of(item(STORY))).size());
+
+        feedsNearDuplicates.nearDuplicateSuppression = false;
+        assertEquals(1, feedsNearDuplicates.suppress(a, List.of(item(STORY))).size());
+    }
+
+    @Test
+    void boundedAndShortTextsIgnored() {
+        feedsNearDuplicates.nearDuplicateIndexSize = 2;
+        feedsNearDuplicates.suppress(a, List.of(item(STORY), item("one two three four"), item("five six seven eight")));
+        assertEquals(2, feedsNearDuplicates.size());
+        assertEquals(1, feedsNearDuplicates.suppress(b, List.of(item(STORY))).size());
+
+        var breaking = new Item();
+        breaking.setTitle("Breaking: <b>news</b> now");
+        assertNull(FeedsNearDuplicates.simHash(breaking));
+        assertEquals(1, feedsNearDuplicates.suppress(b, List.of(breaking)).size());
+        assertEquals(1, feedsNearDuplicates.suppress(a, List.of(breaking)).size());
+    }
+
+    @Test
+    void simHashDistance() {
+        var hash = FeedsNearDuplicates.simHash(item(STORY));
+        var reworded = FeedsNearDuplicates.simHash(item(STORY.replace("persistent", "stubborn")));
+        var other = FeedsNearDuplicates.simHash(item("Storm warning issued for the northern coast this weekend"));
+        assertTrue(Long.bitCount(hash ^ reworded) < Long.bitCount(hash ^ other));
+        assertEquals(hash, FeedsNearDuplicates.simHash(item(STORY.toUpperCase() + "!")));
+    }
+
+    private static Item item(String title) {
+        var item = new Item();
+        item.setTitle(title);
+        var description = new Description();
+        description.setValue("<p>Reuters - " + title + "</p>");
+        item.setDescription(description);
+        return item;
+    }
+
+    private static FeedsConfig.FeedConfig feedConfig(String key) {
+        var feedConfig = new FeedsConfig.FeedConfig();
+        feedConfig.setKey(key);
+        feedConfig.setUrl("https://" + key + ".example.com/rss");
+        return feedConfig;
+    }
+
+    private static FeedsConfig.FeedsGroup group(String groupId, FeedsConfig.FeedConfig... feedConfigs) {
+        var group = new FeedsConfig.FeedsGroup();
+        group.setGroupId(groupId);
+        group.setGroupFeeds(new ArrayList<>(List.of(feedConfigs)));
+        return group;
+    }
+}
@@ -0,0 +1,63 @@
+package de.fimatas.feeds.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.util.FeedsOpml;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsOpmlServiceTest {
+
+    private FeedsOpmlService feedsOpmlService;
+
+    private FeedsConfig feedsConfig;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        feedsOpmlService = new FeedsOpmlService(null, null);
+        try (var inputStream = FeedsOpmlServiceTest.class.getClassLoader().getResourceAsStream("testFeeds.json")) {
+            feedsConfig = new ObjectMapper().readValue(inputStream, FeedsConfig.class);
+        }
+    }
+
+    @Test
+    void merge() {
+        var groupCount = feedsConfig.getGroups().size();
+        var result = new FeedsOpmlService.ImportResult();
+        feedsOpmlService.merge(feedsConfig, List.of(
+                new FeedsOpml.Outline("News", "Daily News", "https://news.example.com/rss"),
+                new FeedsOpml.Outline("News", "Daily News", "https://other.example.com/rss"),
+                new FeedsOpml.Outline(null, null, "https://loose.example.com/rss"),
+                new FeedsOpml.Outline("News", "Again", "HTTPS://News.Example.com/rss/"),
+                new FeedsOpml.Outline("News", "Existing", "http://localhost:8081/example?key=example_A"),
+                new FeedsOpml.Outline("News", "Local file", "file:///etc/passwd"),
+                new FeedsOpml.Outline("News", "Broken", "https://exa mple.com")
+        ), result);
+
+        assertEquals(List.of("daily_news", "daily_news_2", "loose_example_com"), result.getAdded());
+        assertEquals(2, result.getDuplicates().size());
+        assertEquals(2, result.getInvalid().size());
+        assertEquals(groupCount + 2, feedsConfig.getGroups().size());
+
+        var news = feedsConfig.getGroups().get(groupCount);
+        assertEquals("News", news.getGroupId());
+        assertEquals(60, news.getGroupDefaultDurationMinutes());
+        assertEquals(2, news.getGroupFeeds().size());
+        assertTrue(news.getGroupFeeds().get(0).isActive());
+        assertEquals(FeedsOpmlService.DEFAULT_GROUP, feedsConfig.getGroups().get(groupCount + 1).getGroupId());
+    }
+
+    @Test
+    void mergeIntoExistingGroup() {
+        var group = feedsConfig.getGroups().get(0);
+        var feedCount = group.getGroupFeeds().size();
+        var result = new FeedsOpmlService.ImportResult();
+        feedsOpmlService.merge(feedsConfig, List.of(new FeedsOpml.Outline(group.getGroupId(), "example G1A", "https://a.example.com/rss")), result);
+        assertEquals(feedCount + 1, group.getGroupFeeds().size());
+        assertEquals(List.of("example_g1a"), result.getAdded());
+    }
+}
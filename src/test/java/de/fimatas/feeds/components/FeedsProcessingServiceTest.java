@@ -1,11 +1,16 @@
 package de.fimatas.feeds.components;
 
+import com.rometools.rome.feed.rss.Channel;
 import de.fimatas.feeds.controller.ExampleController;
 import de.fimatas.feeds.model.FeedsConfig;
+import de.fimatas.feeds.model.FeedsHttpClientResponse;
+import de.fimatas.feeds.util.FeedsUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static de.fimatas.feeds.components.FeedsProcessingService.ORIGINAL_DESCRIPTION;
 import static de.fimatas.feeds.components.FeedsProcessingService.THE_ITEMS_OF_THIS_FEED_WERE_FILTERED_BY;
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,7 +32,7 @@ public class FeedsProcessingServiceTest {
         feedsConfigService.useTestConfig = true;
         feedsConfigService.startupDelayMinutes = 0;
         feedsConfigService.logStackTrace = false;
-        feedsProcessingService = new FeedsProcessingService(feedsConfigService);
+        feedsProcessingService = new FeedsProcessingService(feedsConfigService, new FeedsNearDuplicates(feedsConfigService, feedsTimer));
         feedsProcessingService.relevantDescriptionLength = 5000;
     }
 
@@ -41,6 +46,23 @@ public class FeedsProcessingServiceTest {
         }));
     }
 
+    @Test
+    void sharedResponseForAllFeedConfigs() throws Exception {
+        var feedConfigs = feedsConfigService.getFeedsGroups().stream().flatMap(gc -> gc.getGroupFeeds().stream())
+                .filter(fc -> !fc.getUrl().endsWith("example_X")).toList();
+        var sharedResponse = exampleController.getFeedResponse("example_B");
+        var sharedChannel = (Channel) FeedsUtil.parseFeed(sharedResponse);
+        var sharedDescription = sharedChannel.getDescription();
+        var sharedItems = List.copyOf(sharedChannel.getItems());
+        for (FeedsConfig.FeedConfig fc : feedConfigs) {
+            var expected = feedsProcessingService.processFeed(new FeedsHttpClientResponse(null, 200, sharedResponse.getBody()), fc);
+            assertEquals(expected, feedsProcessingService.processFeed(sharedResponse, fc), fc.getKey());
+        }
+        assertSame(sharedChannel, sharedResponse.getParsedFeed());
+        assertEquals(sharedDescription, sharedChannel.getDescription());
+        assertEquals(sharedItems, sharedChannel.getItems());
+    }
+
     private void testFeed(FeedsConfig.FeedConfig fc, String key) {
 
         var originalFeedObject = exampleController.getFeedResponse(key);
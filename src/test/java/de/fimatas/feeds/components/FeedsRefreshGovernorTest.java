@@ -0,0 +1,112 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsRefreshThrottledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsRefreshGovernorTest {
+
+    private LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private FeedsRefreshGovernor feedsRefreshGovernor;
+
+    @BeforeEach
+    void beforeEach() {
+        feedsRefreshGovernor = new FeedsRefreshGovernor(new FeedsTimer() {
+            @Override
+            public LocalDateTime localDateTimeNow() {
+                return now;
+            }
+        });
+    }
+
+    @Test
+    void unlimitedWithoutBudget() {
+        var run = feedsRefreshGovernor.startRun("test");
+        var start = now;
+        now = now.plusHours(2);
+        run.refreshed("a", start);
+        assertTrue(run.fits("a"));
+    }
+
+    @Test
+    void deferredByEstimate() {
+        feedsRefreshGovernor.refreshRunBudget = Duration.ofMinutes(5);
+
+        var first = feedsRefreshGovernor.startRun("test");
+        assertTrue(first.fits("a"));
+        var start = now;
+        now = now.plusMinutes(3);
+        first.refreshed("a", start);
+        assertTrue(first.fits("b")); // unknown duration
+        first.refreshed("b", now);
+
+        var second = feedsRefreshGovernor.startRun("test");
+        assertTrue(second.fits("b"));
+        second.refreshed("b", now);
+        now = now.plusMinutes(3);
+        assertFalse(second.fits("a"), "3 of 5 minutes used, 'a' takes 3 minutes");
+        assertTrue(second.fits("b"));
+    }
+
+    @Test
+    void firstUnitAlwaysFits() {
+        feedsRefreshGovernor.refreshRunBudget = Duration.ofMinutes(1);
+        var run = feedsRefreshGovernor.startRun("test");
+        var start = now;
+        now = now.plusMinutes(10);
+        run.refreshed("a", start);
+
+        var next = feedsRefreshGovernor.startRun("test");
+        assertTrue(next.fits("a"));
+    }
+
+    @Test
+    void downloadsInFlightLimited() throws Exception {
+        feedsRefreshGovernor.maxConcurrentDownloads = 2;
+        feedsRefreshGovernor.init();
+
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(6);
+        try {
+            var results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 6; i++) {
+                results.add(executor.submit(() -> feedsRefreshGovernor.download(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    return "ok";
+                })));
+            }
+            for (Future<String> result : results) {
+                assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, maxInFlight.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void noPermitIsThrottled() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(FeedsRefreshThrottledException.class, () -> feedsRefreshGovernor.download(() -> "never"));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
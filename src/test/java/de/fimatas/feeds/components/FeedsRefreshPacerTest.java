@@ -0,0 +1,118 @@
+package de.fimatas.feeds.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsRefreshPacerTest {
+
+    private LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private final List<Duration> sleeps = new ArrayList<>();
+
+    private FeedsRefreshPacer feedsRefreshPacer;
+
+    @BeforeEach
+    void beforeEach() {
+        feedsRefreshPacer = new FeedsRefreshPacer(new FeedsTimer() {
+            @Override
+            public LocalDateTime localDateTimeNow() {
+                return now;
+            }
+        }) {
+            @Override
+            protected void sleep(Duration duration) {
+                sleeps.add(duration);
+                now = now.plus(duration);
+            }
+        };
+        feedsRefreshPacer.hostMinInterval = Duration.ofSeconds(10);
+        feedsRefreshPacer.maxRefreshesPerMinute = 3;
+    }
+
+    @Test
+    void interleaveHosts() {
+        var urls = List.of("https://a.com/1", "https://a.com/2", "https://a.com/3", "https://b.com/1", "https://c.com/1", "https://b.com/2");
+        var interleaved = FeedsRefreshPacer.interleaveHosts(urls, url -> url);
+        assertEquals(List.of("https://a.com/1", "https://b.com/1", "https://c.com/1", "https://a.com/2", "https://b.com/2", "https://a.com/3"),
+                new ArrayList<>(interleaved));
+    }
+
+    @Test
+    void hostWait() {
+        assertEquals(Duration.ZERO, feedsRefreshPacer.hostWait("https://a.com/1"));
+        feedsRefreshPacer.acquire("https://a.com/1");
+        now = now.plusSeconds(4);
+        assertEquals(Duration.ofSeconds(6), feedsRefreshPacer.hostWait("https://a.com/2"));
+        assertEquals(Duration.ZERO, feedsRefreshPacer.hostWait("https://b.com/1"));
+        now = now.plusSeconds(6);
+        assertEquals(Duration.ZERO, feedsRefreshPacer.hostWait("https://a.com/2"));
+    }
+
+    @Test
+    void rateWait() {
+        feedsRefreshPacer.acquire("https://a.com/1");
+        now = now.plusSeconds(20);
+        feedsRefreshPacer.acquire("https://b.com/1");
+        feedsRefreshPacer.acquire("https://c.com/1");
+        assertEquals(Duration.ofSeconds(40), feedsRefreshPacer.rateWait());
+        now = now.plusSeconds(40);
+        assertEquals(Duration.ZERO, feedsRefreshPacer.rateWait());
+    }
+
+    @Test
+    void paceWaitsForHost() {
+        feedsRefreshPacer.pace("https://a.com/1");
+        feedsRefreshPacer.pace("https://b.com/1");
+        feedsRefreshPacer.pace("https://a.com/2");
+        assertEquals(List.of(Duration.ofSeconds(10)), sleeps);
+    }
+
+    @Test
+    void paceWaitsForRate() {
+        feedsRefreshPacer.hostMinInterval = Duration.ZERO;
+        feedsRefreshPacer.pace("https://a.com/1");
+        feedsRefreshPacer.pace("https://b.com/1");
+        feedsRefreshPacer.pace("https://c.com/1");
+        feedsRefreshPacer.pace("https://d.com/1");
+        assertEquals(List.of(Duration.ofMinutes(1)), sleeps);
+    }
+
+    @Test
+    void paceReservesSlots() {
+        // a standing clock: the second caller queues behind the slot reserved by the first
+        feedsRefreshPacer = new FeedsRefreshPacer(new FeedsTimer() {
+            @Override
+            public LocalDateTime localDateTimeNow() {
+                return now;
+            }
+        }) {
+            @Override
+            protected void sleep(Duration duration) {
+                sleeps.add(duration);
+            }
+        };
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        feedsRefreshPacer.pace("https://a.com/1");
+        feedsRefreshPacer.pace("https://a.com/2");
+        feedsRefreshPacer.pace("https://a.com/3");
+        assertEquals(List.of(Duration.ofSeconds(10), Duration.ofSeconds(20)), sleeps);
+    }
+
+    @Test
+    void unlimited() {
+        feedsRefreshPacer.hostMinInterval = Duration.ZERO;
+        feedsRefreshPacer.maxRefreshesPerMinute = 0;
+        for(int i = 0; i < 100; i++){
+            feedsRefreshPacer.pace("https://a.com/" + i);
+        }
+        assertTrue(sleeps.isEmpty());
+        assertEquals(Duration.ZERO, feedsRefreshPacer.rateWait());
+    }
+}
@@ -0,0 +1,126 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsRefreshThroughTest {
+
+    private static final String KEY = "example_G1A";
+
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private FeedsRefreshThrough feedsRefreshThrough;
+
+    @BeforeEach
+    void beforeEach() {
+        var feedsConfigService = new FeedsConfigService();
+        feedsConfigService.useTestConfig = true;
+        feedsRefreshThrough = new FeedsRefreshThrough(feedsConfigService, null) {
+            @Override
+            protected FeedsCache.FeedCacheEntry refresh(FeedsConfig.FeedsGroup groupConfig, FeedsConfig.FeedConfig feedConfig) {
+                refreshCalls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                var feedCacheEntry = new FeedsCache.FeedCacheEntry();
+                feedCacheEntry.setKey(feedConfig.getKey());
+                return feedCacheEntry;
+            }
+        };
+        feedsRefreshThrough.refreshThrough = true;
+        feedsRefreshThrough.init();
+        feedsConfigService.getFeedsGroups(); // read config before the requests race
+
+    }
+
+    @AfterEach
+    void afterEach() {
+        release.countDown();
+        feedsRefreshThrough.shutdown();
+    }
+
+    @Test
+    void concurrentRequestsShareOneDownload() throws Exception {
+        var requests = Executors.newFixedThreadPool(5);
+        try {
+            var results = new ArrayList<Future<FeedsCache.FeedCacheEntry>>();
+            for (int i = 0; i < 5; i++) {
+                results.add(requests.submit(() -> feedsRefreshThrough.refreshAndWait(KEY)));
+            }
+            Thread.sleep(500);
+            release.countDown();
+            var entries = new ArrayList<FeedsCache.FeedCacheEntry>();
+            for (Future<FeedsCache.FeedCacheEntry> result : results) {
+                entries.add(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, refreshCalls.get());
+            assertEquals(KEY, entries.get(0).getKey());
+            assertTrue(entries.stream().allMatch(e -> e == entries.get(0)));
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitIsBounded() {
+        feedsRefreshThrough.refreshThroughMaxWait = Duration.ofMillis(100);
+        assertNull(feedsRefreshThrough.refreshAndWait(KEY));
+        assertEquals(1, refreshCalls.get());
+    }
+
+    @Test
+    void backgroundRefreshJoinsDownloadInFlight() throws Exception {
+        var requests = Executors.newSingleThreadExecutor();
+        try {
+            var result = requests.submit(() -> feedsRefreshThrough.refreshAndWait(KEY));
+            Thread.sleep(200);
+            feedsRefreshThrough.refreshInBackground(KEY);
+            feedsRefreshThrough.refreshInBackground(KEY);
+            release.countDown();
+            assertEquals(KEY, result.get(5, TimeUnit.SECONDS).getKey());
+            assertEquals(1, refreshCalls.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    void unknownFeed() {
+        assertNull(feedsRefreshThrough.refreshAndWait("unknown"));
+        assertFalse(feedsRefreshThrough.isConfiguredFeed("unknown"));
+        assertTrue(feedsRefreshThrough.isConfiguredFeed(KEY));
+        assertEquals(0, refreshCalls.get());
+    }
+
+    @Test
+    void disabled() {
+        var disabled = new FeedsRefreshThrough(new FeedsConfigService(), null);
+        disabled.init();
+        assertNull(disabled.refreshAndWait(KEY));
+        assertEquals(0, refreshCalls.get());
+        disabled.shutdown();
+    }
+
+    @Test
+    void backgroundRefreshWhenDisabled() throws Exception {
+        feedsRefreshThrough.refreshThrough = false;
+        feedsRefreshThrough.refreshInBackground(KEY);
+        release.countDown();
+        Thread.sleep(200);
+        assertEquals(1, refreshCalls.get());
+        assertNull(feedsRefreshThrough.refreshAndWait(KEY));
+    }
+}
@@ -0,0 +1,72 @@
+package de.fimatas.feeds.components;
+
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.model.FeedsDownloadException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsResilienceStoreTest {
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        System.setProperty("active.profile", "test");
+        FileUtils.forceMkdirParent(FeedsCache.lookupCacheFile("resilience.json"));
+        FileUtils.deleteQuietly(FeedsCache.lookupCacheFile("resilience.json"));
+    }
+
+    @AfterEach
+    void afterEach() {
+        FileUtils.deleteQuietly(FeedsCache.lookupCacheFile("resilience.json"));
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void saveAndRestore() throws Exception {
+        var before = newStore();
+        var beforeCircuitBreaker = before.feedsDownloadService.getFeedsDownloadCircuitBreaker();
+        beforeCircuitBreaker.getCircuitBreaker("dead").transitionToOpenState();
+        beforeCircuitBreaker.getCircuitBreaker("flaky").onError(0, TimeUnit.MILLISECONDS, new IllegalStateException());
+        beforeCircuitBreaker.getCircuitBreaker("flaky").onSuccess(0, TimeUnit.MILLISECONDS);
+        before.feedsBackoff.recordFailure("dead", new FeedsDownloadException("HTTP Status Code: 429",
+                FeedsDownloadException.ErrorClass.RATE_LIMITED, 429, Duration.ofHours(2)));
+        before.store.save();
+
+        var after = newStore();
+        after.store.restore();
+        var afterCircuitBreaker = after.feedsDownloadService.getFeedsDownloadCircuitBreaker();
+        assertEquals(CircuitBreaker.State.OPEN, afterCircuitBreaker.getCircuitBreaker("dead").getState());
+        assertEquals(CircuitBreaker.State.CLOSED, afterCircuitBreaker.getCircuitBreaker("flaky").getState());
+        assertEquals(1, afterCircuitBreaker.getCircuitBreaker("flaky").getMetrics().getNumberOfFailedCalls());
+        assertEquals(1, afterCircuitBreaker.getCircuitBreaker("flaky").getMetrics().getNumberOfSuccessfulCalls());
+        assertTrue(after.feedsBackoff.isBackingOff("dead"));
+        assertEquals(before.feedsBackoff.retryNotBefore("dead"), after.feedsBackoff.retryNotBefore("dead"));
+        assertEquals(1, after.feedsBackoff.getBackoffStates().get("dead").failures());
+    }
+
+    @Test
+    void restoreWithoutFile() {
+        var store = newStore();
+        store.store.restore();
+        assertTrue(store.feedsDownloadService.getFeedsDownloadCircuitBreaker().getCircuitBreakers().isEmpty());
+    }
+
+    private static TestStore newStore() {
+        var feedsTimer = new FeedsTimer();
+        var feedsBackoff = new FeedsBackoff(feedsTimer);
+        feedsBackoff.adaptiveBackoff = true;
+        var feedsDownloadService = new FeedsDownloadService(null, null, null, feedsTimer, new FeedsLeaderElection(),
+                new FeedsAdaptiveTtl(), new FeedsRefreshGovernor(feedsTimer), feedsBackoff, new FeedsRefreshPacer(feedsTimer));
+        return new TestStore(new FeedsResilienceStore(feedsDownloadService, feedsBackoff, new FeedsLeaderElection()), feedsDownloadService, feedsBackoff);
+    }
+
+    private record TestStore(FeedsResilienceStore store, FeedsDownloadService feedsDownloadService, FeedsBackoff feedsBackoff) {
+    }
+}
@@ -0,0 +1,109 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.model.FeedsCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedBatchTest {
+
+    private static final Duration TTL = Duration.ofMinutes(30);
+
+    private final Map<String, FeedsCache.FeedCacheEntry> cache = Map.of(
+            "a", entry("a", "<rss>a</rss>", LocalDateTime.now(), TTL),
+            "b", entry("b", "<rss>b</rss>", LocalDateTime.now().minusHours(2), TTL));
+
+    @Test
+    void changedUnchangedAndUnknown() {
+        var etagB = FeedHeaders.buildETagHeaderField(cache.get("b"), false);
+        var stale = new ArrayList<String>();
+        var chunks = FeedBatch.buildBody(List.of(new FeedBatch.Item("a", "\"old\""), new FeedBatch.Item("b", etagB),
+                new FeedBatch.Item("c\r\nX: y", null)), "bnd", false, cache::get, stale::add);
+        var body = body(chunks);
+
+        assertTrue(body.contains("Content-Location: /api/feeds/a\r\nStatus: 200\r\n"));
+        assertTrue(body.contains("Content-Length: 12\r\n\r\n<rss>a</rss>\r\n--bnd"));
+        assertTrue(body.contains("Content-Location: /api/feeds/b\r\nStatus: 304\r\nETag: " + etagB + "\r\n\r\n\r\n--bnd"));
+        assertFalse(body.contains("<rss>b</rss>"));
+        assertTrue(body.contains("Content-Location: /api/feeds/c%0D%0AX%3A+y\r\nStatus: 404\r\n"));
+        assertTrue(body.endsWith("\r\n--bnd--\r\n"));
+        assertEquals(List.of("b"), stale);
+        assertEquals(body.getBytes(StandardCharsets.UTF_8).length, FeedBatch.length(chunks));
+    }
+
+    @Test
+    void deflatedBodiesAreTheCachedArrays() {
+        var chunks = FeedBatch.buildBody(List.of(new FeedBatch.Item("a", null)), "bnd", true, cache::get, key -> {});
+        assertSame(cache.get("a").getContentDeflated(), chunks.get(1));
+        assertTrue(new String(chunks.get(0), StandardCharsets.UTF_8).contains("Content-Encoding: deflate\r\n"));
+    }
+
+    @Test
+    void etag() {
+        var etag = FeedHeaders.buildETagHeaderField(cache.get("a"), false);
+        assertEquals(etag, FeedHeaders.buildETagHeaderField(entry("x", "<rss>a</rss>", LocalDateTime.now(), TTL), false));
+        assertNotEquals(etag, FeedHeaders.buildETagHeaderField(cache.get("b"), false));
+        assertTrue(FeedHeaders.matchesETag("\"x\", W/" + etag, etag));
+        assertTrue(FeedHeaders.matchesETag("*", etag));
+        assertFalse(FeedHeaders.matchesETag(null, etag));
+        assertFalse(FeedBatch.isValid(List.of()));
+        assertFalse(FeedBatch.isValid(List.of(new FeedBatch.Item(null, null))));
+    }
+
+    @Test
+    void etagPerEncoding() {
+        var entry = entry("p", "<rss><channel><item><title>one</title><pubDate>Mon, 19 Oct 2026 10:00:00 GMT</pubDate></item></channel></rss>", LocalDateTime.now(), TTL);
+        var identity = FeedHeaders.buildETagHeaderField(entry, false);
+        var deflated = FeedHeaders.buildETagHeaderField(entry, true);
+        assertNotEquals(identity, deflated);
+        assertTrue(deflated.endsWith("-deflate\""));
+        assertFalse(FeedHeaders.matchesETag(identity, deflated));
+        var version = Instant.parse("2026-10-19T10:00:00Z");
+        assertEquals(version, FeedHeaders.lookupClientVersion(identity).published());
+        assertEquals(FeedHeaders.lookupClientVersion(identity), FeedHeaders.lookupClientVersion(deflated));
+        assertEquals(FeedHeaders.lookupClientVersion(identity), FeedHeaders.lookupClientVersion("W/" + deflated));
+        assertNull(FeedHeaders.lookupClientVersion(FeedHeaders.buildETagHeaderField(cache.get("a"), true)));
+    }
+
+    @Test
+    void feedDeltaOnlyForTheItemsTheClientHolds() {
+        var held = entry("p", rss(item("g1", "08:00"), item("g2", "10:00")), LocalDateTime.now(), TTL);
+        var clientVersion = FeedHeaders.lookupClientVersion(FeedHeaders.buildETagHeaderField(held, false));
+        // a newer item
+        var newer = entry("p", rss(item("g1", "08:00"), item("g2", "10:00"), item("g3", "11:00")), LocalDateTime.now(), TTL);
+        var delta = FeedHeaders.buildFeedDelta(newer, clientVersion);
+        assertTrue(delta.contains("g3"));
+        assertFalse(delta.contains("g1"));
+        assertFalse(delta.contains("g2"));
+        // an item with an older pubDate than the client's version
+        var older = entry("p", rss(item("g1", "08:00"), item("g0", "09:00"), item("g2", "10:00"), item("g3", "11:00")), LocalDateTime.now(), TTL);
+        assertNull(FeedHeaders.buildFeedDelta(older, clientVersion));
+        // an item dropped
+        var dropped = entry("p", rss(item("g2", "10:00"), item("g3", "11:00")), LocalDateTime.now(), TTL);
+        assertNull(FeedHeaders.buildFeedDelta(dropped, clientVersion));
+        assertNull(FeedHeaders.buildFeedDelta(newer, null));
+    }
+
+    private static String rss(String... items) {
+        return "<rss><channel>" + String.join("", items) + "</channel></rss>";
+    }
+
+    private static String item(String guid, String published) {
+        return "<item><guid>" + guid + "</guid><pubDate>Mon, 19 Oct 2026 " + published + ":00 GMT</pubDate></item>";
+    }
+
+    private static String body(List<byte[]> chunks) {
+        var body = new StringBuilder();
+        chunks.forEach(chunk -> body.append(new String(chunk, StandardCharsets.UTF_8)));
+        return body.toString();
+    }
+}
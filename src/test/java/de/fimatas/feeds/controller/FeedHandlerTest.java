@@ -0,0 +1,108 @@
+package de.fimatas.feeds.controller;
+
+import de.fimatas.feeds.components.*;
+import de.fimatas.feeds.configuration.FeedsReactiveConfiguration;
+import de.fimatas.feeds.model.FeedsCache;
+import de.fimatas.feeds.util.FeedsCompression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedHandlerTest {
+
+    private static final String CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rss version=\"2.0\">\n  <channel>\n    <title>t</title>\n    " +
+            "<item>\n      <title>a1</title>\n      <pubDate>Mon, 19 Oct 2026 01:00:00 GMT</pubDate>\n    </item>\n  </channel>\n</rss>\n";
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void beforeEach() {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(new FeedsCacheJsonFileStorage());
+
+        var feedsConfigService = new FeedsConfigService();
+        ReflectionTestUtils.setField(feedsConfigService, "useTestConfig", true);
+        var feedsTimer = new FeedsTimer();
+        var feedsRefreshThrough = new FeedsRefreshThrough(feedsConfigService, null);
+        var feedsDueScheduler = new FeedsDueScheduler(feedsConfigService, null, null, feedsTimer, null, null, null, feedsRefreshThrough);
+        var feedHandler = new FeedHandler(feedsRefreshThrough, feedsDueScheduler, new FeedsGroupAggregator(feedsConfigService, null), feedsTimer);
+
+        var configuration = new FeedsReactiveConfiguration();
+        ReflectionTestUtils.setField(configuration, "rootRedirectUrl", "https://example.com");
+        webTestClient = WebTestClient.bindToRouterFunction(configuration.feedsRoutes(feedHandler, feedsConfigService,
+                new FeedsItemEvents(feedsConfigService, null), new ExampleController(feedsTimer))).build();
+
+        var group = FeedsCache.getInstance().defineGroup("ExampleGroup1");
+        FeedsCache.getInstance().updateFeed(group, entry("example_G1A", CONTENT, LocalDateTime.now(), Duration.ofHours(1)));
+    }
+
+    @AfterEach
+    void afterEach() {
+        FeedsCache.destroyCache();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void getFeed() {
+        var result = webTestClient.get().uri("/api/feeds/example_G1A").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBody(String.class).returnResult();
+        assertEquals(CONTENT, result.getResponseBody());
+
+        webTestClient.get().uri("/api/feeds/example_G1A").header(HttpHeaders.IF_NONE_MATCH, result.getResponseHeaders().getETag()).exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void getFeedDeflated() {
+        var body = webTestClient.get().uri("/api/feeds/example_G1A").header(HttpHeaders.ACCEPT_ENCODING, "deflate").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, FeedsCompression.CONTENT_ENCODING)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertEquals(CONTENT, FeedsCompression.inflate(body));
+    }
+
+    @Test
+    void getFeedUnknown() {
+        webTestClient.get().uri("/api/feeds/unknown").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void getGroup() {
+        var body = webTestClient.get().uri("/api/groups/ExampleGroup1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        var content = new String(body, StandardCharsets.UTF_8);
+        assertTrue(content.contains("<title>ExampleGroup1</title>"));
+        assertTrue(content.contains("<title>a1</title>"));
+
+        webTestClient.get().uri("/api/groups/unknown").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void healthcheckAndRedirect() {
+        webTestClient.get().uri("/api/healthcheck").exchange().expectStatus().isOk();
+        webTestClient.get().uri("/").exchange()
+                .expectStatus().isTemporaryRedirect()
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, "https://example.com");
+    }
+
+    @Test
+    void eventsDisabled() {
+        webTestClient.get().uri("/api/events/feeds/example_G1A").exchange().expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,47 @@
+package de.fimatas.feeds.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static de.fimatas.feeds.TestCacheEntries.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedCacheEntryTest {
+
+    @Test
+    void fresh() {
+        var entry = entry("key", "<rss/>", LocalDateTime.now().minusMinutes(5), Duration.ofMinutes(30));
+        assertEquals(FeedsCache.Freshness.FRESH, entry.getFreshness());
+        assertTrue(entry.hasActualContent());
+    }
+
+    @Test
+    void staleAfterTtl() {
+        var entry = entry("key", "<rss/>", LocalDateTime.now().minusMinutes(45), Duration.ofMinutes(30));
+        assertEquals(FeedsCache.Freshness.STALE, entry.getFreshness());
+        assertTrue(entry.hasActualContent());
+    }
+
+    @Test
+    void staleAfterError() {
+        var entry = entry("key", "<rss/>", LocalDateTime.now().minusMinutes(5), Duration.ofMinutes(30));
+        entry.increaseRefreshErrorCounter();
+        assertEquals(FeedsCache.Freshness.STALE, entry.getFreshness());
+    }
+
+    @Test
+    void expired() {
+        assertEquals(FeedsCache.Freshness.EXPIRED, entry("key", "<rss/>", LocalDateTime.now().minusDays(2), Duration.ofMinutes(30)).getFreshness());
+
+        var tooManyErrors = entry("key", "<rss/>", LocalDateTime.now().minusMinutes(5), Duration.ofMinutes(30));
+        tooManyErrors.setRefreshErrorCounter(10);
+        assertEquals(FeedsCache.Freshness.EXPIRED, tooManyErrors.getFreshness());
+
+        var withoutContent = entry("key", "<rss/>", LocalDateTime.now().minusMinutes(5), Duration.ofMinutes(30));
+        withoutContent.setContentDeflated(null);
+        assertEquals(FeedsCache.Freshness.EXPIRED, withoutContent.getFreshness());
+        assertFalse(withoutContent.hasActualContent());
+    }
+}
@@ -0,0 +1,81 @@
+package de.fimatas.feeds.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsCacheTest {
+
+    private static final int THREADS = 16;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @BeforeEach
+    void beforeEach() {
+        System.setProperty("active.profile", "test");
+        FeedsCache.destroyCache();
+        FeedsCache.useStorage(new CountingStorage());
+    }
+
+    @AfterEach
+    void afterEach() {
+        FeedsCache.destroyCache();
+        System.clearProperty("active.profile");
+    }
+
+    @Test
+    void getInstanceConcurrently() throws Exception {
+        // Arrange
+        var executor = Executors.newFixedThreadPool(THREADS);
+        var start = new CountDownLatch(1);
+        // Act
+        var instances = IntStream.range(0, THREADS).mapToObj(i -> executor.submit(() -> {
+            start.await();
+            return FeedsCache.getInstance();
+        })).toList();
+        start.countDown();
+        // Assert
+        for(Future<FeedsCache> instance : instances){
+            assertSame(FeedsCache.getInstance(), instance.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    void storageNotChangeableAfterRead() {
+        FeedsCache.getInstance();
+        assertThrows(IllegalStateException.class, () -> FeedsCache.useStorage(new CountingStorage()));
+    }
+
+    private class CountingStorage implements FeedsCacheStorage {
+
+        @Override
+        public FeedsCache.FeedsCacheRoot read() {
+            reads.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void write(FeedsCache.FeedsCacheRoot root) {
+        }
+
+        @Override
+        public AccessState checkAccess() {
+            return AccessState.OK;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
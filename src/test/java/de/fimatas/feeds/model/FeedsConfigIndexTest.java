@@ -0,0 +1,55 @@
+package de.fimatas.feeds.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsConfigIndexTest {
+
+    private FeedsConfig feedsConfig;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        try (var inputStream = FeedsConfigIndexTest.class.getClassLoader().getResourceAsStream("testFeeds.json")) {
+            feedsConfig = new ObjectMapper().readValue(inputStream, FeedsConfig.class);
+        }
+    }
+
+    @Test
+    void lookups() {
+        var index = FeedsConfigIndex.of(feedsConfig);
+        var group = feedsConfig.getGroups().get(1);
+        var feedConfig = group.getGroupFeeds().get(0);
+        assertSame(group, index.lookupGroup(group.getGroupId()));
+        assertSame(feedConfig, index.lookupFeed(feedConfig.getKey()).feedConfig());
+        assertSame(group, index.lookupFeed(feedConfig.getKey()).group());
+        assertNull(index.lookupFeed("unknown"));
+        assertEquals(index.getFeeds().size(), index.lookupFeedsByHost("localhost").size());
+        assertTrue(index.lookupFeedsByHost("example.com").isEmpty());
+    }
+
+    @Test
+    void firstOfDuplicateKeysWins() {
+        var first = feedsConfig.getGroups().get(0).getGroupFeeds().get(0);
+        var duplicate = new FeedsConfig.FeedConfig();
+        duplicate.setKey(first.getKey());
+        duplicate.setUrl("https://other.example.com/rss");
+        var groupFeeds = new ArrayList<>(feedsConfig.getGroups().get(1).getGroupFeeds());
+        groupFeeds.add(duplicate);
+        feedsConfig.getGroups().get(1).setGroupFeeds(groupFeeds);
+
+        var index = FeedsConfigIndex.of(feedsConfig);
+        assertSame(first, index.lookupFeed(first.getKey()).feedConfig());
+        assertTrue(index.lookupFeedsByHost("other.example.com").isEmpty());
+    }
+
+    @Test
+    void lookupHost() {
+        assertEquals("news.example.com", FeedsConfigIndex.lookupHost("HTTPS://News.Example.com/rss"));
+        assertEquals("no url", FeedsConfigIndex.lookupHost("no url"));
+    }
+}
@@ -0,0 +1,73 @@
+package de.fimatas.feeds.model;
+
+import de.fimatas.feeds.util.FeedsCompression;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsItemIndexTest {
+
+    private static final String CONTENT = "<rss version=\"2.0\">\n  <channel>\n    <title>t</title>\n"
+            + "    <item>\n      <title>one</title>\n      <pubDate>Mon, 19 Oct 2026 08:00:00 GMT</pubDate>\n    </item>\n"
+            + "    <item>\n      <title>two &lt;item&gt;</title>\n      <pubDate>Mon, 19 Oct 2026 10:00:00 GMT</pubDate>\n    </item>\n"
+            + "  </channel>\n</rss>\n";
+
+    @Test
+    void itemsPublishedAfter() {
+        var index = FeedsItemIndex.of(FeedsCompression.deflate(CONTENT));
+        assertEquals(2, index.size());
+        assertEquals(Instant.parse("2026-10-19T10:00:00Z"), index.getNewestPublished());
+        assertEquals(1, index.countPublishedAfter(Instant.parse("2026-10-19T09:00:00Z")));
+
+        var delta = index.retainPublishedAfter(CONTENT, Instant.parse("2026-10-19T09:00:00Z"));
+        assertFalse(delta.contains("one"));
+        assertTrue(delta.contains("<title>t</title>"));
+        assertTrue(delta.contains("<title>two &lt;item&gt;</title>"));
+        assertTrue(delta.endsWith("</item>\n  </channel>\n</rss>\n"));
+
+        var empty = index.retainPublishedAfter(CONTENT, Instant.parse("2026-10-19T10:00:00Z"));
+        assertFalse(empty.contains("<item>"));
+        assertTrue(empty.contains("</channel>"));
+    }
+
+    @Test
+    void undatedItemPreventsDeltas() {
+        var index = FeedsItemIndex.of(FeedsCompression.deflate(CONTENT.replace("<pubDate>Mon, 19 Oct 2026 08:00:00 GMT</pubDate>", "")));
+        assertEquals(2, index.size());
+        assertNull(index.getNewestPublished());
+    }
+
+    @Test
+    void rebuiltForNewContent() {
+        var entry = new FeedsCache.FeedCacheEntry();
+        entry.setContent(CONTENT);
+        var index = entry.getItemIndex();
+        assertSame(index, entry.getItemIndex());
+        entry.setContent(CONTENT.replace("10:00:00", "11:00:00"));
+        assertNotSame(index, entry.getItemIndex());
+        assertEquals(Instant.parse("2026-10-19T11:00:00Z"), entry.getItemIndex().getNewestPublished());
+        assertNotEquals(index.getChecksum(), entry.getItemIndex().getChecksum());
+    }
+
+    @Test
+    void hashItemsPublishedUntil() {
+        var index = FeedsItemIndex.of(FeedsCompression.deflate(CONTENT));
+        var until = Instant.parse("2026-10-19T10:00:00Z");
+        var reordered = CONTENT.replaceFirst("(?s)(    <item>.*?</item>\n)(    <item>.*?</item>\n)", "$2$1");
+        assertNotEquals(CONTENT, reordered);
+        assertEquals(index.hashItemsPublishedUntil(until), FeedsItemIndex.of(FeedsCompression.deflate(reordered)).hashItemsPublishedUntil(until));
+        assertNotEquals(index.hashItemsPublishedUntil(until), index.hashItemsPublishedUntil(Instant.parse("2026-10-19T09:00:00Z")));
+    }
+
+    @Test
+    void itemIdentity() {
+        assertEquals("guid:g1", new FeedsItemIndex.IndexedItem(null,
+                "<item><title>a</title><link>https://example.com/a</link><guid isPermaLink=\"false\">g1</guid></item>").identity());
+        assertEquals("link:https://example.com/a", new FeedsItemIndex.IndexedItem(null,
+                "<item><title>a</title><link>https://example.com/a</link><guid/></item>").identity());
+        var xml = "<item><title>a</title></item>";
+        assertEquals(xml, new FeedsItemIndex.IndexedItem(null, xml).identity());
+    }
+}
@@ -0,0 +1,36 @@
+package de.fimatas.feeds.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsCompressionTest {
+
+    @Test
+    void deflateAndInflate() {
+        var content = "<rss><channel><title>Ä Ö Ü</title>" + "<item><title>title</title></item>".repeat(100) + "</channel></rss>";
+        var deflated = FeedsCompression.deflate(content);
+        assertTrue(deflated.length < content.length() / 10);
+        assertEquals(content, FeedsCompression.inflate(deflated));
+    }
+
+    @Test
+    void inflateToBytes() {
+        var content = "<rss><channel><title>Ä Ö Ü</title></channel></rss>";
+        assertArrayEquals(content.getBytes(StandardCharsets.UTF_8), FeedsCompression.inflateToBytes(FeedsCompression.deflate(content)));
+        assertNull(FeedsCompression.inflateToBytes(null));
+    }
+
+    @Test
+    void deflateAndInflateNull() {
+        assertNull(FeedsCompression.deflate(null));
+        assertNull(FeedsCompression.inflate(null));
+    }
+
+    @Test
+    void inflateCorrupt() {
+        assertThrows(IllegalStateException.class, () -> FeedsCompression.inflate(new byte[]{1, 2, 3}));
+    }
+}
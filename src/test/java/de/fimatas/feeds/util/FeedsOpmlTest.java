@@ -0,0 +1,54 @@
+package de.fimatas.feeds.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fimatas.feeds.model.FeedsConfig;
+import org.jdom2.JDOMException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeedsOpmlTest {
+
+    @Test
+    void parseFlattensNestedFolders() throws Exception {
+        var outlines = FeedsOpml.parse(stream("""
+                <opml version="2.0"><head><title>reader</title></head><body>
+                  <outline text="News">
+                    <outline text="Local"><outline type="rss" text="City" xmlUrl="https://city.example.com/rss"/></outline>
+                    <outline type="rss" text="World" title="World News" xmlUrl=" https://world.example.com/feed "/>
+                  </outline>
+                  <outline type="rss" text="Loose" xmlUrl="https://loose.example.com/rss"/>
+                </body></opml>"""));
+        assertEquals(3, outlines.size());
+        assertEquals(new FeedsOpml.Outline("News", "City", "https://city.example.com/rss"), outlines.get(0));
+        assertEquals(new FeedsOpml.Outline("News", "World News", "https://world.example.com/feed"), outlines.get(1));
+        assertEquals(new FeedsOpml.Outline(null, "Loose", "https://loose.example.com/rss"), outlines.get(2));
+    }
+
+    @Test
+    void doctypeIsRejected() {
+        assertThrows(JDOMException.class, () -> FeedsOpml.parse(stream("""
+                <?xml version="1.0"?><!DOCTYPE opml [<!ENTITY xxe SYSTEM "file:///etc/passwd">]>
+                <opml><body><outline text="&xxe;" xmlUrl="https://example.com"/></body></opml>""")));
+    }
+
+    @Test
+    void exportParsesBack() throws Exception {
+        FeedsConfig feedsConfig;
+        try (var inputStream = FeedsOpmlTest.class.getClassLoader().getResourceAsStream("testFeeds.json")) {
+            feedsConfig = new ObjectMapper().readValue(inputStream, FeedsConfig.class);
+        }
+        var outlines = FeedsOpml.parse(stream(FeedsOpml.export(feedsConfig)));
+        var feedConfigs = feedsConfig.getGroups().stream().flatMap(g -> g.getGroupFeeds().stream()).toList();
+        assertEquals(feedConfigs.size(), outlines.size());
+        assertEquals(feedConfigs.get(0).getUrl(), outlines.get(0).xmlUrl());
+        assertEquals(feedsConfig.getGroups().get(0).getGroupId(), outlines.get(0).group());
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}